@@ -1,48 +1,218 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.ServiceLoader;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
 
 public class Optimizer {
-    abstract static class ObjectiveFunction {
+    public abstract static class ObjectiveFunction {
         public abstract double compute(double[] variables);
 
-        public abstract double[] computeGradient(double[] variables);
+        public double[] computeGradient(double[] variables) {
+            double[] gradient = new double[variables.length];
+            computeGradient(variables, gradient);
+            return gradient;
+        }
+
+        // writes the gradient into a caller-owned buffer, gradient must not alias variables
+        public abstract void computeGradient(double[] variables, double[] gradient);
+
+        // fused evaluation, subclasses override when both can share one pass
+        public double computeValueAndGradient(double[] variables, double[] gradient) {
+            computeGradient(variables, gradient);
+            return compute(variables);
+        }
 
         public abstract double computeGradientMagnitude(double[] variables);
 
         public abstract double[] getBounds();
 
         public abstract String getName();
+
+        // number of variables the objective is defined for, 0 when any dimensionality works
+        public int getDimensionality() {
+            return 0;
+        }
+
+        // identifies the objective together with any data it was loaded from, used in cache and
+        // checkpoint keys
+        public String getConfigurationKey() {
+            return getName();
+        }
+
+        // Objectives whose value is a sum of per-coordinate terms can evaluate a slice [from, to) of
+        // terms and gradient entries, which lets ParallelObjectiveFunction split the work. A slice
+        // may read coordinates just outside itself, so neighbouring terms need no halo copies.
+        public boolean supportsRanges() {
+            return false;
+        }
+
+        public double computeRange(double[] variables, int from, int to) {
+            throw new UnsupportedOperationException(getName() + " does not support range evaluation");
+        }
+
+        public void computeGradientRange(double[] variables, double[] gradient, int from, int to) {
+            throw new UnsupportedOperationException(getName() + " does not support range evaluation");
+        }
+
+        public double computeValueAndGradientRange(double[] variables, double[] gradient, int from, int to) {
+            computeGradientRange(variables, gradient, from, to);
+            return computeRange(variables, from, to);
+        }
+
+        // Evaluates a block of count points in one call. The block is structure-of-arrays: coordinate d
+        // of point p is points[d * count + p], so every coordinate is one contiguous run across the block.
+        // values[p] receives the objective of point p, gradients uses the same layout as points and may
+        // be null when only values are needed. Subclasses override this with loops over the block; the
+        // default gathers each point into a scratch array and evaluates it on its own.
+        public void computeBatch(double[] points, int count, int dimension, double[] values, double[] gradients) {
+            double[] point = new double[dimension];
+            double[] gradient = gradients == null ? null : new double[dimension];
+            for (int p = 0; p < count; p++) {
+                for (int d = 0; d < dimension; d++) {
+                    point[d] = points[d * count + p];
+                }
+                if (gradients == null) {
+                    values[p] = compute(point);
+                } else {
+                    values[p] = computeValueAndGradient(point, gradient);
+                    for (int d = 0; d < dimension; d++) {
+                        gradients[d * count + p] = gradient[d];
+                    }
+                }
+            }
+        }
     }
 
     public static class QuadraticFunction extends ObjectiveFunction {
         @Override
         public double compute(double[] variables) {
+            return computeRange(variables, 0, variables.length);
+        }
+
+        @Override
+        public void computeGradient(double[] variables, double[] gradient) {
+            computeGradientRange(variables, gradient, 0, variables.length);
+        }
+
+        @Override
+        public double computeValueAndGradient(double[] variables, double[] gradient) {
+            return computeValueAndGradientRange(variables, gradient, 0, variables.length);
+        }
+
+        @Override
+        public boolean supportsRanges() {
+            return true;
+        }
+
+        @Override
+        public double computeRange(double[] variables, int from, int to) {
             double obj_func_value = 0;
-            for (double variable : variables) {
-                obj_func_value += Math.pow(variable, 2);
+            for (int i = from; i < to; i++) {
+                obj_func_value += variables[i] * variables[i];
             }
             return obj_func_value;
         }
 
         @Override
-        public double[] computeGradient(double[] variables) {
-            double[] variables_copy = variables.clone();
-            for (int i = 0; i < variables_copy.length; i++) {
-                variables_copy[i] = variables_copy[i] * 2;
+        public void computeGradientRange(double[] variables, double[] gradient, int from, int to) {
+            for (int i = from; i < to; i++) {
+                gradient[i] = variables[i] * 2;
+            }
+        }
+
+        @Override
+        public double computeValueAndGradientRange(double[] variables, double[] gradient, int from, int to) {
+            double obj_func_value = 0;
+            for (int i = from; i < to; i++) {
+                obj_func_value += variables[i] * variables[i];
+                gradient[i] = variables[i] * 2;
+            }
+            return obj_func_value;
+        }
+
+        // terms are added in coordinate order for every point, so each value matches compute() exactly
+        @Override
+        public void computeBatch(double[] points, int count, int dimension, double[] values, double[] gradients) {
+            Arrays.fill(values, 0, count, 0);
+            for (int d = 0; d < dimension; d++) {
+                int base = d * count;
+                for (int p = 0; p < count; p++) {
+                    double x = points[base + p];
+                    values[p] += x * x;
+                }
+                if (gradients != null) {
+                    for (int p = 0; p < count; p++) {
+                        gradients[base + p] = points[base + p] * 2;
+                    }
+                }
             }
-            return variables_copy;
         }
 
         @Override
         public double computeGradientMagnitude(double[] variables) {
-            double[] variables_copy = variables.clone();
             double magnitude = 0;
-            for (double variable : variables_copy) {
-                magnitude += Math.pow(variable, 2);
+            for (double variable : variables) {
+                magnitude += variable * variable;
             }
             return Math.sqrt(magnitude);
         }
@@ -61,34 +231,110 @@ public class Optimizer {
     public static class RosenbrockFunction extends ObjectiveFunction {
         @Override
         public double compute(double[] variables) {
+            return computeRange(variables, 0, variables.length);
+        }
+
+        @Override
+        public void computeGradient(double[] variables, double[] gradient) {
+            computeGradientRange(variables, gradient, 0, variables.length);
+        }
+
+        @Override
+        public double computeValueAndGradient(double[] variables, double[] gradient) {
+            return computeValueAndGradientRange(variables, gradient, 0, variables.length);
+        }
+
+        @Override
+        public boolean supportsRanges() {
+            return true;
+        }
+
+        // term i couples x[i] and x[i + 1], there is no term for the last coordinate
+        @Override
+        public double computeRange(double[] variables, int from, int to) {
             double obj_func_value = 0;
-            for (int i = 0; i < variables.length - 1; i++) {
-                obj_func_value += (100 * Math.pow(variables[i + 1] - Math.pow(variables[i], 2), 2)
-                        + Math.pow(1 - variables[i], 2));
+            int end = Math.min(to, variables.length - 1);
+            for (int i = from; i < end; i++) {
+                double curve = variables[i + 1] - variables[i] * variables[i];
+                double offset = 1 - variables[i];
+                obj_func_value += (100 * (curve * curve) + offset * offset);
             }
             return obj_func_value;
         }
 
         @Override
-        public double[] computeGradient(double[] variables) {
-            double[] variables_copy = variables.clone();
-            for (int i = 0; i < variables_copy.length; i++) {
-                if (i == variables_copy.length - 1) {
-                    variables_copy[i] = (200 * (variables[i] - Math.pow(variables[i - 1], 2)));
+        public void computeGradientRange(double[] variables, double[] gradient, int from, int to) {
+            int last = variables.length - 1;
+            for (int i = from; i < to; i++) {
+                if (i == last) {
+                    gradient[i] = (200 * (variables[i] - variables[i - 1] * variables[i - 1]));
+                } else {
+                    gradient[i] = (-400 * variables[i]
+                            * (variables[i + 1] - variables[i] * variables[i]) - 2 * (1 - variables[i]));
+                }
+            }
+        }
+
+        @Override
+        public double computeValueAndGradientRange(double[] variables, double[] gradient, int from, int to) {
+            double obj_func_value = 0;
+            int last = variables.length - 1;
+            int end = Math.min(to, last);
+            for (int i = from; i < end; i++) {
+                double curve = variables[i + 1] - variables[i] * variables[i];
+                double offset = 1 - variables[i];
+                obj_func_value += (100 * (curve * curve) + offset * offset);
+                gradient[i] = (-400 * variables[i] * curve - 2 * offset);
+            }
+            if (to > last) {
+                gradient[last] = (200 * (variables[last] - variables[last - 1] * variables[last - 1]));
+            }
+            return obj_func_value;
+        }
+
+        @Override
+        public void computeBatch(double[] points, int count, int dimension, double[] values, double[] gradients) {
+            Arrays.fill(values, 0, count, 0);
+            for (int d = 0; d < dimension - 1; d++) {
+                int base = d * count;
+                int next = base + count;
+                // separate loops keep the null check out of the part the JIT vectorizes
+                if (gradients == null) {
+                    for (int p = 0; p < count; p++) {
+                        double x = points[base + p];
+                        double curve = points[next + p] - x * x;
+                        double offset = 1 - x;
+                        values[p] += (100 * (curve * curve) + offset * offset);
+                    }
                 } else {
-                    variables_copy[i] = (-400 * variables_copy[i]
-                            * (variables_copy[i + 1] - Math.pow(variables_copy[i], 2)) - 2 * (1 - variables_copy[i]));
+                    for (int p = 0; p < count; p++) {
+                        double x = points[base + p];
+                        double curve = points[next + p] - x * x;
+                        double offset = 1 - x;
+                        values[p] += (100 * (curve * curve) + offset * offset);
+                        gradients[base + p] = (-400 * x * curve - 2 * offset);
+                    }
                 }
             }
-            return variables_copy;
+            if (gradients != null) {
+                addCouplingTerms(points, count, dimension, gradients);
+            }
+        }
+
+        // the last coordinate only enters through the term it shares with the one before it
+        void addCouplingTerms(double[] points, int count, int dimension, double[] gradients) {
+            int last = (dimension - 1) * count;
+            int previous = last - count;
+            for (int p = 0; p < count; p++) {
+                gradients[last + p] = (200 * (points[last + p] - points[previous + p] * points[previous + p]));
+            }
         }
 
         @Override
         public double computeGradientMagnitude(double[] variables) {
-            double[] variables_copy = variables.clone();
             double magnitude = 0;
-            for (double variable : variables_copy) {
-                magnitude += Math.pow(variable, 2);
+            for (double variable : variables) {
+                magnitude += variable * variable;
             }
             return Math.sqrt(magnitude);
         }
@@ -106,338 +352,5579 @@ public class Optimizer {
 
     public static class Rosenbrock_Bonus extends RosenbrockFunction {
         @Override
-        public double[] computeGradient(double[] variables) {
-            double[] variables_copy = variables.clone();
-            for (int i = 0; i < variables_copy.length; i++) {
+        public void computeGradientRange(double[] variables, double[] gradient, int from, int to) {
+            int last = variables.length - 1;
+            for (int i = from; i < to; i++) {
                 if (i == 0) {
-                    variables_copy[i] = (-400 * variables_copy[i]
-                            * (variables_copy[i + 1] - Math.pow(variables_copy[i], 2)) - 2 * (1 - variables_copy[i]));
-                } else if (i == variables_copy.length - 1) {
-                    variables_copy[i] = (200 * (variables[i] - Math.pow(variables[i - 1], 2)));
+                    gradient[i] = (-400 * variables[i]
+                            * (variables[i + 1] - variables[i] * variables[i]) - 2 * (1 - variables[i]));
+                } else if (i == last) {
+                    gradient[i] = (200 * (variables[i] - variables[i - 1] * variables[i - 1]));
                 } else {
-                    variables_copy[i] = (-400 * variables_copy[i]
-                            * (variables_copy[i + 1] - Math.pow(variables_copy[i], 2)) - 2 * (1 - variables_copy[i])
-                            + 200 * (variables[i] - Math.pow(variables[i - 1], 2)));
+                    gradient[i] = (-400 * variables[i]
+                            * (variables[i + 1] - variables[i] * variables[i]) - 2 * (1 - variables[i])
+                            + 200 * (variables[i] - variables[i - 1] * variables[i - 1]));
                 }
             }
-            return variables_copy;
         }
 
         @Override
-        public String getName() {
-            return "Rosenbrock_Bonus";
-        }
-    }
-
-    public static class SteepestDescentOptimizer {
-        public static void optimizeSteepestDescent(ObjectiveFunction objectiveFunction, double[] variables,
-                int iterations, double tolerance, double stepSize, int dimensionality, ArrayList<String> outputArray) {
-            DecimalFormat df = new DecimalFormat("0.00000");
-            int k = iterations;
-            // floor variables for rounding to be accurate
-            for (int i = 0; i < variables.length; i++) {
-                variables[i] = floorTo5Decimals(variables[i]);
-            }
-            double[] variables_gradient = new double[dimensionality];
-            for (int i = 0; i < variables_gradient.length; i++) {
-                variables_gradient[i] = floorTo5Decimals(objectiveFunction.computeGradient(variables)[i]);
-            }
-            double current_tolerance = Double.MAX_VALUE;
-            // while loop implements stopping conditions
-            while (current_tolerance > tolerance && k > 0) {
-                for (int i = 0; i < variables_gradient.length; i++) {
-                    variables_gradient[i] = floorTo5DecimalsXValues(objectiveFunction.computeGradient(variables)[i]);
-                }
-                outputArray.add("Iteration " + (iterations - k + 1) + ":");
-                outputArray.add("Objective Function Value: "
-                        + df.format(floorTo5Decimals(objectiveFunction.compute(variables))));
-                outputArray.add("x-values: " + arrayToString(variables));
-                if (iterations - k > 0) {
-                    outputArray.add("Current Tolerance: " + df.format(floorTo5Decimals(current_tolerance)));
-                }
-                for (int i = 0; i < dimensionality; i++) {
-                    // Update rule
-                    variables[i] = floorTo5Decimals(variables[i] - (stepSize * variables_gradient[i]));
-                }
-                current_tolerance = objectiveFunction.computeGradientMagnitude(variables_gradient);
-                outputArray.add("");
-                k--;
-            }
-            // output last iteration of optimization process
-            if (current_tolerance < tolerance) { // could be more efficient
-                outputArray.add("Iteration " + (iterations - k + 1) + ":");
-                outputArray.add("Objective Function Value: " + floorTo5Decimals(objectiveFunction.compute(variables)));
-                outputArray.add("x-values: " + arrayToString(variables));
-                if (iterations - k > 0) {
-                    outputArray.add("Current Tolerance: " + df.format(floorTo5Decimals(current_tolerance)));
+        public double computeValueAndGradientRange(double[] variables, double[] gradient, int from, int to) {
+            double obj_func_value = 0;
+            int last = variables.length - 1;
+            int end = Math.min(to, last);
+            for (int i = from; i < end; i++) {
+                double curve = variables[i + 1] - variables[i] * variables[i];
+                double offset = 1 - variables[i];
+                obj_func_value += (100 * (curve * curve) + offset * offset);
+                gradient[i] = (-400 * variables[i] * curve - 2 * offset);
+                if (i > 0) {
+                    gradient[i] += 200 * (variables[i] - variables[i - 1] * variables[i - 1]);
                 }
-                outputArray.add("");
             }
-            // output result messages based on stopping conditions
-            if (k == 0) {
-                outputArray.add("Maximum iterations reached without satisfying the tolerance.");
-                outputArray.add("");
-            } else {
-                outputArray.add("Convergence reached after " + (iterations - k + 1) + " iterations.");
-                outputArray.add("");
+            if (to > last) {
+                gradient[last] = (200 * (variables[last] - variables[last - 1] * variables[last - 1]));
             }
-            outputArray.add("Optimization process completed.");
+            return obj_func_value;
         }
 
-        private static int getValidatedInput(Scanner scanner, String prompt) {
-            // get validated binary prompts
-            int value = Integer.MAX_VALUE;
-            try {
-                prompt = scanner.next();
-                value = Integer.valueOf(prompt);
-                if (!(value == 0 || value == 1)) {
-                    System.out.println("Please enter a valid input (0 or 1).");
+        @Override
+        void addCouplingTerms(double[] points, int count, int dimension, double[] gradients) {
+            for (int d = 1; d < dimension - 1; d++) {
+                int base = d * count;
+                int previous = base - count;
+                for (int p = 0; p < count; p++) {
+                    gradients[base + p] += 200 * (points[base + p] - points[previous + p] * points[previous + p]);
                 }
-            } catch (NumberFormatException e) {
-                System.out.println("Please enter a valid input (0 or 1).");
             }
-            return value;
+            super.addCouplingTerms(points, count, dimension, gradients);
         }
 
-        private static boolean getValidatedInput(String objectiveFunctionName, ArrayList<String> errorArray) {
-            // get validated objective function name
-            boolean isValid = true;
-            if (!(objectiveFunctionName.toLowerCase().equals("quadratic")
-                    || objectiveFunctionName.toLowerCase().equals("rosenbrock")
-                    || objectiveFunctionName.toLowerCase().equals("rosenbrock_bonus"))) {
-                errorArray.add("Error: Unknown objective function.");
-                isValid = false;
-            }
-            return isValid;
+        @Override
+        public String getName() {
+            return "Rosenbrock_Bonus";
         }
+    }
 
-        private static void getValidatedInput(ObjectiveFunction objFunc, int dimensionality, double[] startingPoint,
-                ArrayList<String> errorArray) {
-            // Validate dimensionality
-            if (startingPoint.length != dimensionality) {
-                errorArray.add("Error: Initial point dimensionality mismatch.");
-            }
-            // validate in bounds
-            boolean[] inBounds = checkBounds(startingPoint, objFunc.getBounds());
-            for (int i = 0; i < inBounds.length; i++) {
-                if (!inBounds[i] && errorArray.isEmpty()) {
-                    errorArray.add("Error: Initial point " + startingPoint[i] + " is outside the bounds [-5.0, 5.0]");
-                }
-            }
+    // Evaluates a range-capable objective on a ForkJoinPool. The coordinates are cut into fixed-size
+    // chunks that do not depend on the pool size, each chunk's partial sum lands in its own slot and
+    // the slots are added in chunk order, so results are identical from run to run on any machine.
+    // They can differ in the last bits from the sequential sum, which adds the terms in one pass.
+    public static class ParallelObjectiveFunction extends ObjectiveFunction {
+        static final int CHUNK_SIZE = 1 << 14;
+
+        private final ObjectiveFunction delegate;
+        private final ForkJoinPool pool;
+
+        public ParallelObjectiveFunction(ObjectiveFunction delegate) {
+            this(delegate, ForkJoinPool.commonPool());
         }
 
-        private static void getFileInput(Scanner scanner, int txt_or_console_output, ArrayList<String> outputArray,
-                ArrayList<String> errorArray) throws Exception {
-            System.out.println("Please provide the path to the config file:");
-            File file = new File(scanner.next());
-            BufferedReader br;
-            String line = "";
-            try {
-                br = new BufferedReader(new FileReader(file));
-                line = br.readLine().trim();
-                String objectiveFunctionName = line;
-                line = br.readLine().trim();
-                int dimensionality = Integer.valueOf(line);
-                line = br.readLine().trim();
-                int iterations = Integer.valueOf(line);
-                line = br.readLine().trim();
-                double tolerance = Double.valueOf(line);
-                line = br.readLine().trim();
-                double stepSize = Double.valueOf(line);
-                // Create valid initial point array to ensure dimensionality mismatch is
-                // validated
-                ArrayList<Double> startingPoint = new ArrayList<>();
-                String[] stringArray = br.readLine().trim().split(" ");
-                for (String s : stringArray) {
-                    startingPoint.add(Double.valueOf(s));
-                }
-                double[] startingPointArray = new double[startingPoint.size()];
-                for (int i = 0; i < startingPoint.size(); i++) {
-                    startingPointArray[i] = startingPoint.get(i);
-                }
-                br.close();
-                // Check if objective function name is valid
-                if (getValidatedInput(objectiveFunctionName, errorArray)) {
-                    if (objectiveFunctionName.toLowerCase().equals("quadratic")) {
-                        QuadraticFunction objFunc = new QuadraticFunction();
-                        getValidatedInput(objFunc, dimensionality, startingPointArray, errorArray);
-                    } else if (objectiveFunctionName.toLowerCase().equals("rosenbrock")) {
-                        RosenbrockFunction objFunc = new RosenbrockFunction();
-                        getValidatedInput(objFunc, dimensionality, startingPointArray, errorArray);
-                    } else if (objectiveFunctionName.toLowerCase().equals("rosenbrock_bonus")) {
-                        Rosenbrock_Bonus objFunc = new Rosenbrock_Bonus();
-                        getValidatedInput(objFunc, dimensionality, startingPointArray, errorArray);
-                    }
-                    if (!(errorArray.isEmpty())) {
-                        outputArray(scanner, 1, errorArray);
-                        System.exit(0);
-                    } else {
-                        printOutput(scanner, objectiveFunctionName, startingPointArray, iterations, tolerance, stepSize,
-                                dimensionality, txt_or_console_output, outputArray, errorArray);
-                    }
-                } else {
-                    // Terminate program before taking input for startingPoint if error in objective
-                    // function name
-                    outputArray(scanner, 1, errorArray);
-                }
-            } catch (FileNotFoundException e) {
-                System.out.println("Error reading the file.");
-                System.exit(0);
-                e.printStackTrace();
-            }
+        public ParallelObjectiveFunction(ObjectiveFunction delegate, ForkJoinPool pool) {
+            this.delegate = delegate;
+            this.pool = pool;
         }
 
-        private static void getManualInput(Scanner scanner, int txt_or_console_output, ArrayList<String> outputArray,
-                ArrayList<String> errorArray) {
-            System.out.println("Enter the choice of objective function (quadratic or rosenbrock):");
-            String objectiveFunctionName = scanner.next();
-            System.out.println("Enter the dimensionality of the problem:");
-            int dimensionality = scanner.nextInt();
-            System.out.println("Enter the number of iterations:");
-            int iterations = scanner.nextInt();
-            System.out.println("Enter the tolerance:");
-            double tolerance = scanner.nextDouble();
-            System.out.println("Enter the step size:");
-            double stepSize = scanner.nextDouble();
-            // validate objective function name
-            if (getValidatedInput(objectiveFunctionName, errorArray)) {
-                System.out.println("Enter the initial point as " + dimensionality + " space-separated values:");
-                ArrayList<Double> startingPoint = new ArrayList<>();
-                scanner.nextLine(); // ghost line
-                String input = scanner.nextLine();
-                String[] stringArray = input.split(" ");
-                for (String s : stringArray) {
-                    startingPoint.add(Double.valueOf(s));
-                }
-                double[] startingPointArray = new double[startingPoint.size()];
-                for (int i = 0; i < startingPoint.size(); i++) {
-                    startingPointArray[i] = startingPoint.get(i);
-                }
-                printOutput(scanner, objectiveFunctionName, startingPointArray, iterations, tolerance, stepSize,
-                        dimensionality, txt_or_console_output, outputArray, errorArray);
-            } else {
-                // Terminate program before taking input for startingPoint if error in objective
-                // function name
-                outputArray(scanner, txt_or_console_output, errorArray);
-            }
+        private boolean sequential(double[] variables) {
+            return variables.length <= CHUNK_SIZE || !delegate.supportsRanges();
         }
 
-        private static void printOutput(Scanner scanner, String objectiveFunctionName, double[] variables,
-                int iterations, double tolerance, double stepSize, int dimensionality, int txt_or_console_output,
-                ArrayList<String> outputArray, ArrayList<String> errorArray) {
-            // output different calculations based on objective function chosen
-            switch (objectiveFunctionName.toLowerCase()) {
-                case "quadratic": {
-                    QuadraticFunction objFunc = new QuadraticFunction();
-                    getValidatedOutput(scanner, objFunc, variables, iterations, tolerance, stepSize, dimensionality,
-                            txt_or_console_output, outputArray, errorArray);
-                    break;
-                }
-                case "rosenbrock": {
-                    RosenbrockFunction objFunc = new RosenbrockFunction();
-                    getValidatedOutput(scanner, objFunc, variables, iterations, tolerance, stepSize, dimensionality,
-                            txt_or_console_output, outputArray, errorArray);
-                    break;
-                }
-                case "rosenbrock_bonus": {
-                    Rosenbrock_Bonus objFunc = new Rosenbrock_Bonus();
-                    getValidatedOutput(scanner, objFunc, variables, iterations, tolerance, stepSize, dimensionality,
-                            txt_or_console_output, outputArray, errorArray);
-                    break;
-                }
+        @Override
+        public double compute(double[] variables) {
+            if (sequential(variables)) {
+                return delegate.compute(variables);
             }
+            return run(RangeTask.VALUE, variables, null);
         }
 
-        private static void outputArray(Scanner scanner, int txt_or_console_output, ArrayList<String> arrayList) {
-            // output to text file
-            if (txt_or_console_output == 0) {
-                System.out.println("Please provide the path for the output file:");
-                File file = new File(scanner.next());
-                try (BufferedWriter bw = new BufferedWriter(new FileWriter(file))) {
-                    file.createNewFile();
-                    for (String s : arrayList) {
-                        bw.write(s);
-                        bw.newLine();
-                    }
-                    bw.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            } else {
-                // output to console
-                for (String s : arrayList) {
-                    System.out.println(s);
-                }
+        @Override
+        public void computeGradient(double[] variables, double[] gradient) {
+            if (sequential(variables)) {
+                delegate.computeGradient(variables, gradient);
+                return;
             }
+            run(RangeTask.GRADIENT, variables, gradient);
         }
 
-        private static void getValidatedOutput(Scanner scanner, ObjectiveFunction objFunc, double[] variables,
-                int iterations, double tolerance, double stepSize, int dimensionality, int txt_or_console_output,
-                ArrayList<String> outputArray, ArrayList<String> errorArray) {
-            DecimalFormat df = new DecimalFormat("0.00000");
-            getValidatedInput(objFunc, dimensionality, variables, errorArray);
-            // only output calculations if there are no errors, otherwise output it
-            if (!(errorArray.isEmpty())) {
-                outputArray(scanner, txt_or_console_output, errorArray);
-            } else {
-                outputArray.add("Objective Function: " + objFunc.getName());
-                outputArray.add("Dimensionality: " + dimensionality);
-                outputArray.add("Initial Point: " + arrayToStringNoFloor(variables));
-                outputArray.add("Iterations: " + iterations);
-                outputArray.add("Tolerance: " + df.format(tolerance));
-                outputArray.add("Step Size: " + df.format(stepSize));
-                outputArray.add("");
-                outputArray.add("Optimization process:");
-                optimizeSteepestDescent(objFunc, variables, iterations, tolerance, stepSize, dimensionality,
-                        outputArray);
-                outputArray(scanner, txt_or_console_output, outputArray);
+        @Override
+        public double computeValueAndGradient(double[] variables, double[] gradient) {
+            if (sequential(variables)) {
+                return delegate.computeValueAndGradient(variables, gradient);
             }
+            return run(RangeTask.VALUE_AND_GRADIENT, variables, gradient);
         }
 
-        private static boolean[] checkBounds(double[] variables, double[] bounds) {
-            boolean[] inBounds = new boolean[variables.length];
-            for (int i = 0; i < variables.length; i++) {
-                if (variables[i] < bounds[0] || variables[i] > bounds[1]) {
-                    inBounds[i] = false;
-                } else {
-                    inBounds[i] = true;
-                }
+        @Override
+        public double computeGradientMagnitude(double[] variables) {
+            if (variables.length <= CHUNK_SIZE) {
+                return delegate.computeGradientMagnitude(variables);
             }
-            return inBounds;
+            return Math.sqrt(run(RangeTask.SUM_OF_SQUARES, variables, null));
         }
 
-        private static String arrayToStringNoFloor(double[] variables) {
-            String variablesString = "";
-            for (double variable : variables) {
-                variablesString += variable + " ";
-            }
-            return variablesString;
+        private double run(int kind, double[] variables, double[] gradient) {
+            return invokeRanges(pool, delegate, kind, variables, gradient);
         }
 
-        private static String arrayToString(double[] variables) {
-            DecimalFormat df = new DecimalFormat("0.00000");
-            String variablesString = "";
-            for (double variable : variables) {
-                variablesString += df.format(floorTo5DecimalsXValues(variable)) + " ";
+        // splits a range-capable objective into CHUNK_SIZE slices on pool, see RangeTask for kind
+        static double invokeRanges(ForkJoinPool pool, ObjectiveFunction objectiveFunction, int kind,
+                double[] variables, double[] gradient) {
+            int chunks = (variables.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            double[] partials = new double[chunks];
+            pool.invoke(new RangeTask(objectiveFunction, kind, variables, gradient, partials, 0, chunks));
+            // fixed reduction order keeps the result reproducible
+            double sum = 0;
+            for (double partial : partials) {
+                sum += partial;
             }
-            return variablesString;
+            return sum;
         }
 
-        private static double floorTo5Decimals(double value) {
-            BigDecimal bd = new BigDecimal(value).setScale(5, RoundingMode.FLOOR);
-            return bd.doubleValue();
+        @Override
+        public boolean supportsRanges() {
+            return delegate.supportsRanges();
         }
 
-        private static double floorTo5DecimalsXValues(double value) {
-
-            double scale = Math.pow(10, 5);
-
-            return Math.round(value * scale) / scale;
+        @Override
+        public double computeRange(double[] variables, int from, int to) {
+            return delegate.computeRange(variables, from, to);
+        }
 
+        @Override
+        public void computeGradientRange(double[] variables, double[] gradient, int from, int to) {
+            delegate.computeGradientRange(variables, gradient, from, to);
         }
-    }
+
+        @Override
+        public double computeValueAndGradientRange(double[] variables, double[] gradient, int from, int to) {
+            return delegate.computeValueAndGradientRange(variables, gradient, from, to);
+        }
+
+        @Override
+        public void computeBatch(double[] points, int count, int dimension, double[] values, double[] gradients) {
+            delegate.computeBatch(points, count, dimension, values, gradients);
+        }
+
+        @Override
+        public double[] getBounds() {
+            return delegate.getBounds();
+        }
+
+        @Override
+        public String getName() {
+            return delegate.getName();
+        }
+
+        @Override
+        public int getDimensionality() {
+            return delegate.getDimensionality();
+        }
+
+        @Override
+        public String getConfigurationKey() {
+            return delegate.getConfigurationKey();
+        }
+
+        public ObjectiveFunction getDelegate() {
+            return delegate;
+        }
+    }
+
+    static final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        static final int VALUE = 0;
+        static final int GRADIENT = 1;
+        static final int VALUE_AND_GRADIENT = 2;
+        static final int SUM_OF_SQUARES = 3;
+
+        private final ObjectiveFunction objectiveFunction;
+        private final int kind;
+        private final double[] variables;
+        private final double[] gradient;
+        private final double[] partials;
+        private final int firstChunk;
+        private final int endChunk;
+
+        RangeTask(ObjectiveFunction objectiveFunction, int kind, double[] variables, double[] gradient,
+                double[] partials, int firstChunk, int endChunk) {
+            this.objectiveFunction = objectiveFunction;
+            this.kind = kind;
+            this.variables = variables;
+            this.gradient = gradient;
+            this.partials = partials;
+            this.firstChunk = firstChunk;
+            this.endChunk = endChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (endChunk - firstChunk > 1) {
+                int middle = (firstChunk + endChunk) >>> 1;
+                invokeAll(new RangeTask(objectiveFunction, kind, variables, gradient, partials, firstChunk, middle),
+                        new RangeTask(objectiveFunction, kind, variables, gradient, partials, middle, endChunk));
+                return;
+            }
+            int from = firstChunk * ParallelObjectiveFunction.CHUNK_SIZE;
+            int to = Math.min(from + ParallelObjectiveFunction.CHUNK_SIZE, variables.length);
+            switch (kind) {
+                case VALUE:
+                    partials[firstChunk] = objectiveFunction.computeRange(variables, from, to);
+                    break;
+                case GRADIENT:
+                    objectiveFunction.computeGradientRange(variables, gradient, from, to);
+                    break;
+                case VALUE_AND_GRADIENT:
+                    partials[firstChunk] = objectiveFunction.computeValueAndGradientRange(variables, gradient, from,
+                            to);
+                    break;
+                default: {
+                    double sum = 0;
+                    for (int i = from; i < to; i++) {
+                        sum += variables[i] * variables[i];
+                    }
+                    partials[firstChunk] = sum;
+                }
+            }
+        }
+    }
+
+    // Service provider interface for objective functions. Implementations outside this file are found
+    // with ServiceLoader through a META-INF/services/Optimizer$ObjectiveProvider entry on the class path.
+    public interface ObjectiveProvider {
+        // lowercase names this provider creates
+        List<String> getNames();
+
+        // argument is the text after "name:" in the objective spec, or null when there is none.
+        // Throws IllegalArgumentException with an "Error: ..." message when it cannot be built.
+        ObjectiveFunction create(String name, String argument);
+    }
+
+    // Resolves objective specs of the form name or name:argument, for example quadratic or
+    // sparse_quadratic:A.mtx. The built-in objectives come first, discovered providers can add names
+    // but not replace them.
+    public static final class ObjectiveRegistry {
+        private static final ObjectiveProvider BUILTIN = new BuiltinObjectiveProvider();
+        private static final List<String> BUILTIN_NAMES = BUILTIN.getNames();
+
+        private ObjectiveRegistry() {
+        }
+
+        // ServiceLoader only runs the first time a name is not built in, so runs of the built-in
+        // objectives never scan the class path and need no service registration in a native image
+        private static final class Discovered {
+            static final Map<String, ObjectiveProvider> PROVIDERS = loadProviders();
+
+            private static Map<String, ObjectiveProvider> loadProviders() {
+                LinkedHashMap<String, ObjectiveProvider> providers = new LinkedHashMap<>();
+                for (String name : BUILTIN_NAMES) {
+                    providers.put(name, BUILTIN);
+                }
+                for (ObjectiveProvider provider : ServiceLoader.load(ObjectiveProvider.class)) {
+                    for (String name : provider.getNames()) {
+                        providers.putIfAbsent(name.toLowerCase(), provider);
+                    }
+                }
+                return providers;
+            }
+        }
+
+        private static ObjectiveProvider providerOf(String name) {
+            return BUILTIN_NAMES.contains(name) ? BUILTIN : Discovered.PROVIDERS.get(name);
+        }
+
+        private static String nameOf(String spec) {
+            int colon = spec.indexOf(':');
+            return (colon < 0 ? spec : spec.substring(0, colon)).trim().toLowerCase();
+        }
+
+        public static boolean isKnown(String spec) {
+            return providerOf(nameOf(spec)) != null;
+        }
+
+        public static List<String> getNames() {
+            return new ArrayList<>(Discovered.PROVIDERS.keySet());
+        }
+
+        // null for unknown names, IllegalArgumentException when a known objective cannot be built
+        public static ObjectiveFunction create(String spec) {
+            String name = nameOf(spec);
+            ObjectiveProvider provider = providerOf(name);
+            if (provider == null) {
+                return null;
+            }
+            int colon = spec.indexOf(':');
+            return provider.create(name, colon < 0 ? null : spec.substring(colon + 1).trim());
+        }
+    }
+
+    static final class BuiltinObjectiveProvider implements ObjectiveProvider {
+        // objectives defined by a formula alone, they read no files
+        static final List<String> FORMULA_NAMES = Arrays.asList("quadratic", "rosenbrock", "rosenbrock_bonus");
+
+        @Override
+        public List<String> getNames() {
+            return Arrays.asList("quadratic", "rosenbrock", "rosenbrock_bonus", "sparse_quadratic", "least_squares",
+                    "logistic");
+        }
+
+        @Override
+        public ObjectiveFunction create(String name, String argument) {
+            switch (name) {
+                case "quadratic":
+                    return new QuadraticFunction();
+                case "rosenbrock":
+                    return new RosenbrockFunction();
+                case "rosenbrock_bonus":
+                    return new Rosenbrock_Bonus();
+                case "least_squares":
+                    return DatasetObjective.fromSpec(DatasetObjective.Loss.SQUARED, argument);
+                case "logistic":
+                    return DatasetObjective.fromSpec(DatasetObjective.Loss.LOGISTIC, argument);
+                default:
+                    return SparseQuadraticFunction.fromSpec(argument);
+            }
+        }
+    }
+
+    // Reads a file as a byte stream through read-only memory mappings of WINDOW_SIZE bytes, so files
+    // larger than one mapping can be parsed without copying them onto the heap.
+    static final class MappedByteReader implements Closeable {
+        static final long WINDOW_SIZE = 1L << 28;
+
+        private final FileChannel channel;
+        private final long size;
+        private long windowStart;
+        private MappedByteBuffer window;
+
+        MappedByteReader(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            size = channel.size();
+            map(0);
+        }
+
+        private void map(long start) throws IOException {
+            windowStart = start;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start));
+        }
+
+        long size() {
+            return size;
+        }
+
+        // next byte, or -1 at the end of the file
+        int read() throws IOException {
+            if (!window.hasRemaining()) {
+                long next = windowStart + window.limit();
+                if (next >= size) {
+                    return -1;
+                }
+                map(next);
+            }
+            return window.get() & 0xFF;
+        }
+
+        // next whitespace-separated token, skipping lines that start with %, or null at the end
+        String token() throws IOException {
+            int c = read();
+            while (c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '%') {
+                if (c == '%') {
+                    while (c != '\n' && c != -1) {
+                        c = read();
+                    }
+                }
+                c = read();
+            }
+            if (c == -1) {
+                return null;
+            }
+            StringBuilder sb = new StringBuilder();
+            while (c != -1 && c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                sb.append((char) c);
+                c = read();
+            }
+            return sb.toString();
+        }
+
+        // rest of the current line, used for the Matrix Market banner
+        String line() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            int c = read();
+            while (c != -1 && c != '\n') {
+                sb.append((char) c);
+                c = read();
+            }
+            return sb.toString().trim();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // Square sparse matrix in compressed sparse row form. Entries of row i are
+    // columns[rowStart[i] .. rowStart[i + 1]) with the matching values; repeated entries are allowed
+    // and add up.
+    static final class SparseMatrix {
+        static final int CSR_MAGIC = 0x43535231; // "CSR1"
+
+        final int size;
+        final int[] rowStart;
+        final int[] columns;
+        final double[] values;
+
+        SparseMatrix(int size, int[] rowStart, int[] columns, double[] values) {
+            this.size = size;
+            this.rowStart = rowStart;
+            this.columns = columns;
+            this.values = values;
+        }
+
+        int nonZeros() {
+            return rowStart[size];
+        }
+
+        double multiplyRow(int row, double[] x) {
+            double sum = 0;
+            for (int j = rowStart[row]; j < rowStart[row + 1]; j++) {
+                sum += values[j] * x[columns[j]];
+            }
+            return sum;
+        }
+
+        static SparseMatrix read(Path path) throws IOException {
+            if (readMagic(path) == CSR_MAGIC) {
+                return readCsr(path);
+            }
+            try (MappedByteReader reader = new MappedByteReader(path)) {
+                return readMatrixMarket(reader);
+            }
+        }
+
+        private static int readMagic(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+                channel.read(magic, 0);
+                return magic.getInt(0);
+            }
+        }
+
+        // Matrix Market coordinate format, real, integer or pattern. Only the symmetric part of A enters
+        // 1/2 x^T A x, so general matrices are stored as (A + A^T) / 2 and symmetric ones are expanded
+        // to both triangles, which makes the gradient A x - b in either case.
+        private static SparseMatrix readMatrixMarket(MappedByteReader reader) throws IOException {
+            String banner = reader.line().toLowerCase();
+            String[] header = banner.split("\\s+");
+            if (header.length < 5 || !header[0].equals("%%matrixmarket") || !header[1].equals("matrix")
+                    || !header[2].equals("coordinate")) {
+                throw new IllegalArgumentException("Error: Expected a Matrix Market coordinate matrix.");
+            }
+            boolean pattern = header[3].equals("pattern");
+            if (!(pattern || header[3].equals("real") || header[3].equals("integer"))) {
+                throw new IllegalArgumentException("Error: Unsupported Matrix Market field " + header[3] + ".");
+            }
+            boolean symmetric = header[4].equals("symmetric");
+            if (!(symmetric || header[4].equals("general"))) {
+                throw new IllegalArgumentException("Error: Unsupported Matrix Market symmetry " + header[4] + ".");
+            }
+            int rows = Integer.parseInt(reader.token());
+            int cols = Integer.parseInt(reader.token());
+            long entries = Long.parseLong(reader.token());
+            if (rows != cols) {
+                throw new IllegalArgumentException("Error: The matrix must be square.");
+            }
+            if (2 * entries > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Error: The matrix has too many entries.");
+            }
+            int capacity = (int) (2 * entries);
+            int[] entryRows = new int[capacity];
+            int[] entryColumns = new int[capacity];
+            double[] entryValues = new double[capacity];
+            int count = 0;
+            for (long e = 0; e < entries; e++) {
+                String rowToken = reader.token();
+                String columnToken = reader.token();
+                String valueToken = pattern ? "1" : reader.token();
+                if (valueToken == null) {
+                    throw new IllegalArgumentException("Error: The matrix file ends after " + e + " entries.");
+                }
+                int i = Integer.parseInt(rowToken) - 1;
+                int j = Integer.parseInt(columnToken) - 1;
+                if (i < 0 || i >= rows || j < 0 || j >= cols) {
+                    throw new IllegalArgumentException("Error: Matrix entry " + (e + 1) + " is out of range.");
+                }
+                double v = Double.parseDouble(valueToken);
+                if (i == j) {
+                    entryRows[count] = i;
+                    entryColumns[count] = j;
+                    entryValues[count++] = v;
+                    continue;
+                }
+                double half = symmetric ? v : 0.5 * v;
+                entryRows[count] = i;
+                entryColumns[count] = j;
+                entryValues[count++] = half;
+                entryRows[count] = j;
+                entryColumns[count] = i;
+                entryValues[count++] = half;
+            }
+            // counting sort by row
+            int[] rowStart = new int[rows + 1];
+            for (int e = 0; e < count; e++) {
+                rowStart[entryRows[e] + 1]++;
+            }
+            for (int i = 0; i < rows; i++) {
+                rowStart[i + 1] += rowStart[i];
+            }
+            int[] next = Arrays.copyOf(rowStart, rows);
+            int[] columns = new int[count];
+            double[] values = new double[count];
+            for (int e = 0; e < count; e++) {
+                int slot = next[entryRows[e]]++;
+                columns[slot] = entryColumns[e];
+                values[slot] = entryValues[e];
+            }
+            return new SparseMatrix(rows, rowStart, columns, values);
+        }
+
+        // little-endian: magic, size, non-zeros, rowStart[size + 1], columns[nnz], values[nnz]. The file
+        // holds the matrix exactly as used, so it must already be symmetric.
+        private static SparseMatrix readCsr(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, 12);
+                header.order(ByteOrder.LITTLE_ENDIAN);
+                header.getInt();
+                int size = header.getInt();
+                int nonZeros = header.getInt();
+                long expected = 12 + 4L * (size + 1) + 4L * nonZeros + 8L * nonZeros;
+                if (size < 0 || nonZeros < 0 || channel.size() != expected) {
+                    throw new IllegalArgumentException("Error: Corrupt CSR file " + path + ".");
+                }
+                int[] rowStart = new int[size + 1];
+                int[] columns = new int[nonZeros];
+                double[] values = new double[nonZeros];
+                long position = 12;
+                position = mapInts(channel, position, rowStart);
+                position = mapInts(channel, position, columns);
+                // map in slices so arrays beyond one mapping still load
+                int done = 0;
+                while (done < values.length) {
+                    int length = Math.min(values.length - done, (int) (MappedByteReader.WINDOW_SIZE / 8));
+                    MappedByteBuffer slice = channel.map(FileChannel.MapMode.READ_ONLY, position, 8L * length);
+                    slice.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(values, done, length);
+                    done += length;
+                    position += 8L * length;
+                }
+                if (rowStart[0] != 0 || rowStart[size] != nonZeros) {
+                    throw new IllegalArgumentException("Error: Corrupt CSR file " + path + ".");
+                }
+                for (int i = 0; i < size; i++) {
+                    if (rowStart[i] > rowStart[i + 1]) {
+                        throw new IllegalArgumentException("Error: Corrupt CSR file " + path + ".");
+                    }
+                }
+                for (int column : columns) {
+                    if (column < 0 || column >= size) {
+                        throw new IllegalArgumentException("Error: Corrupt CSR file " + path + ".");
+                    }
+                }
+                return new SparseMatrix(size, rowStart, columns, values);
+            }
+        }
+
+        private static long mapInts(FileChannel channel, long position, int[] target) throws IOException {
+            int done = 0;
+            while (done < target.length) {
+                int length = Math.min(target.length - done, (int) (MappedByteReader.WINDOW_SIZE / 4));
+                MappedByteBuffer slice = channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * length);
+                slice.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(target, done, length);
+                done += length;
+                position += 4L * length;
+            }
+            return position;
+        }
+
+        void writeCsr(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(CSR_MAGIC).putInt(size).putInt(nonZeros());
+                for (int value : rowStart) {
+                    buffer = drainIfFull(channel, buffer, 4);
+                    buffer.putInt(value);
+                }
+                for (int value : columns) {
+                    buffer = drainIfFull(channel, buffer, 4);
+                    buffer.putInt(value);
+                }
+                for (double value : values) {
+                    buffer = drainIfFull(channel, buffer, 8);
+                    buffer.putDouble(value);
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+
+        private static ByteBuffer drainIfFull(FileChannel channel, ByteBuffer buffer, int needed)
+                throws IOException {
+            if (buffer.remaining() < needed) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+            }
+            return buffer;
+        }
+
+        // right-hand side as a Matrix Market array or plain whitespace-separated numbers
+        static double[] readVector(Path path, int size) throws IOException {
+            double[] vector = new double[size];
+            try (MappedByteReader reader = new MappedByteReader(path)) {
+                String first = reader.token();
+                if (first != null && first.toLowerCase().startsWith("%%matrixmarket")) {
+                    reader.line();
+                    int rows = Integer.parseInt(reader.token());
+                    int cols = Integer.parseInt(reader.token());
+                    if ((long) rows * cols != size) {
+                        throw new IllegalArgumentException("Error: The vector does not match the matrix size.");
+                    }
+                    first = reader.token();
+                }
+                String token = first;
+                for (int i = 0; i < size; i++) {
+                    if (token == null) {
+                        throw new IllegalArgumentException("Error: The vector does not match the matrix size.");
+                    }
+                    vector[i] = Double.parseDouble(token);
+                    token = reader.token();
+                }
+                if (token != null) {
+                    throw new IllegalArgumentException("Error: The vector does not match the matrix size.");
+                }
+            }
+            return vector;
+        }
+    }
+
+    // f(x) = 1/2 x^T A x - b^T x with a sparse symmetric A, gradient A x - b. Spec:
+    // sparse_quadratic:<matrix file> or sparse_quadratic:<matrix file><path separator><b file>, where
+    // the matrix is Matrix Market or the binary CSR layout of SparseMatrix. Rows are evaluated in
+    // ParallelObjectiveFunction.CHUNK_SIZE slices on the common pool once there is more than one
+    // slice, with partial sums added in slice order so results do not depend on the machine.
+    public static class SparseQuadraticFunction extends ObjectiveFunction {
+        private final SparseMatrix matrix;
+        private final double[] b;
+        private final String configurationKey;
+
+        SparseQuadraticFunction(SparseMatrix matrix, double[] b, String configurationKey) {
+            this.matrix = matrix;
+            this.b = b;
+            this.configurationKey = configurationKey;
+        }
+
+        static SparseQuadraticFunction fromSpec(String argument) {
+            if (argument == null || argument.isEmpty()) {
+                throw new IllegalArgumentException("Error: sparse_quadratic needs a matrix file.");
+            }
+            String[] files = argument.split(Pattern.quote(File.pathSeparator));
+            try {
+                Path matrixPath = Paths.get(files[0]);
+                SparseMatrix matrix = SparseMatrix.read(matrixPath);
+                double[] b = files.length > 1 ? SparseMatrix.readVector(Paths.get(files[1]), matrix.size)
+                        : new double[matrix.size];
+                // file identity, so an edited matrix never hits a stale cache entry or checkpoint
+                StringBuilder key = new StringBuilder("Sparse_Quadratic");
+                for (String file : files) {
+                    Path path = Paths.get(file).toAbsolutePath();
+                    key.append(':').append(path).append('@').append(Files.size(path)).append('@')
+                            .append(Files.getLastModifiedTime(path).toMillis());
+                }
+                return new SparseQuadraticFunction(matrix, b, key.toString());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Error: Invalid number in " + argument + ".");
+            } catch (NoSuchFileException e) {
+                throw new IllegalArgumentException("Error: File not found: " + e.getFile() + ".");
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Error: Could not read " + argument + ": " + e.getMessage());
+            }
+        }
+
+        private boolean chunked(double[] variables) {
+            return variables.length > ParallelObjectiveFunction.CHUNK_SIZE;
+        }
+
+        @Override
+        public double compute(double[] variables) {
+            if (chunked(variables)) {
+                return ParallelObjectiveFunction.invokeRanges(ForkJoinPool.commonPool(), this, RangeTask.VALUE,
+                        variables, null);
+            }
+            return computeRange(variables, 0, variables.length);
+        }
+
+        @Override
+        public void computeGradient(double[] variables, double[] gradient) {
+            if (chunked(variables)) {
+                ParallelObjectiveFunction.invokeRanges(ForkJoinPool.commonPool(), this, RangeTask.GRADIENT,
+                        variables, gradient);
+                return;
+            }
+            computeGradientRange(variables, gradient, 0, variables.length);
+        }
+
+        @Override
+        public double computeValueAndGradient(double[] variables, double[] gradient) {
+            if (chunked(variables)) {
+                return ParallelObjectiveFunction.invokeRanges(ForkJoinPool.commonPool(), this,
+                        RangeTask.VALUE_AND_GRADIENT, variables, gradient);
+            }
+            return computeValueAndGradientRange(variables, gradient, 0, variables.length);
+        }
+
+        @Override
+        public boolean supportsRanges() {
+            return true;
+        }
+
+        // row i contributes x_i * (1/2 (A x)_i - b_i)
+        @Override
+        public double computeRange(double[] variables, int from, int to) {
+            double obj_func_value = 0;
+            for (int i = from; i < to; i++) {
+                obj_func_value += variables[i] * (0.5 * matrix.multiplyRow(i, variables) - b[i]);
+            }
+            return obj_func_value;
+        }
+
+        @Override
+        public void computeGradientRange(double[] variables, double[] gradient, int from, int to) {
+            for (int i = from; i < to; i++) {
+                gradient[i] = matrix.multiplyRow(i, variables) - b[i];
+            }
+        }
+
+        @Override
+        public double computeValueAndGradientRange(double[] variables, double[] gradient, int from, int to) {
+            double obj_func_value = 0;
+            for (int i = from; i < to; i++) {
+                double row = matrix.multiplyRow(i, variables);
+                gradient[i] = row - b[i];
+                obj_func_value += variables[i] * (0.5 * row - b[i]);
+            }
+            return obj_func_value;
+        }
+
+        @Override
+        public double computeGradientMagnitude(double[] variables) {
+            double magnitude = 0;
+            for (double variable : variables) {
+                magnitude += variable * variable;
+            }
+            return Math.sqrt(magnitude);
+        }
+
+        // the problem is unconstrained
+        @Override
+        public double[] getBounds() {
+            return new double[] { Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY };
+        }
+
+        @Override
+        public String getName() {
+            return "Sparse_Quadratic";
+        }
+
+        @Override
+        public int getDimensionality() {
+            return matrix.size;
+        }
+
+        @Override
+        public String getConfigurationKey() {
+            return configurationKey;
+        }
+
+        public int getNonZeros() {
+            return matrix.nonZeros();
+        }
+    }
+
+    // Mean per-sample loss over a binary dataset that is memory-mapped rather than loaded. The file is
+    // little-endian: magic, feature count (int), sample count (long), then one record per sample of
+    // the feature values followed by the target, all doubles. The model is linear, the prediction
+    // for a sample is w . features. Specs: least_squares:<file> for 1/2 (prediction - target)^2 and
+    // logistic:<file> for the logistic loss with 0/1 targets.
+    public static class DatasetObjective extends ObjectiveFunction {
+        static final int DATASET_MAGIC = 0x44534554; // "DSET"
+        static final int HEADER_BYTES = 16;
+
+        enum Loss {
+            SQUARED("least_squares"),
+            LOGISTIC("logistic");
+
+            // registry name, used in error messages
+            final String specName;
+
+            Loss(String specName) {
+                this.specName = specName;
+            }
+        }
+
+        private final Loss loss;
+        private final int features;
+        private final long samples;
+        private final int recordDoubles;
+        private final int samplesPerWindow;
+        // one read-only view per mapping window, read with absolute gets so threads can share them
+        private final DoubleBuffer[] windows;
+        private final String configurationKey;
+
+        DatasetObjective(Path path, Loss loss) throws IOException {
+            this.loss = loss;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                while (header.hasRemaining() && channel.read(header) >= 0) {
+                    // keep reading until the header is complete or the file ends
+                }
+                if (header.hasRemaining() || header.getInt(0) != DATASET_MAGIC) {
+                    throw new IllegalArgumentException("Error: " + path + " is not a dataset file.");
+                }
+                features = header.getInt(4);
+                samples = header.getLong(8);
+                recordDoubles = features + 1;
+                long recordBytes = 8L * recordDoubles;
+                if (features < 1 || samples < 1 || channel.size() != HEADER_BYTES + samples * recordBytes) {
+                    throw new IllegalArgumentException("Error: Corrupt dataset file " + path + ".");
+                }
+                samplesPerWindow = (int) Math.max(1, MappedByteReader.WINDOW_SIZE / recordBytes);
+                windows = new DoubleBuffer[(int) ((samples + samplesPerWindow - 1) / samplesPerWindow)];
+                for (int w = 0; w < windows.length; w++) {
+                    long first = (long) w * samplesPerWindow;
+                    long count = Math.min(samplesPerWindow, samples - first);
+                    // the mapping stays valid after the channel is closed
+                    windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + first * recordBytes,
+                            count * recordBytes).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+                }
+            }
+            Path absolute = path.toAbsolutePath();
+            configurationKey = getName() + ':' + absolute + '@' + Files.size(absolute) + '@'
+                    + Files.getLastModifiedTime(absolute).toMillis();
+        }
+
+        static DatasetObjective fromSpec(Loss loss, String argument) {
+            if (argument == null || argument.isEmpty()) {
+                throw new IllegalArgumentException("Error: " + loss.specName + " needs a dataset file.");
+            }
+            try {
+                return new DatasetObjective(Paths.get(argument), loss);
+            } catch (NoSuchFileException e) {
+                throw new IllegalArgumentException("Error: File not found: " + e.getFile() + ".");
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Error: Could not read " + argument + ": " + e.getMessage());
+            }
+        }
+
+        public long getSampleCount() {
+            return samples;
+        }
+
+        int getRecordDoubles() {
+            return recordDoubles;
+        }
+
+        // copies count records starting at sample first into target, safe to call from several threads
+        void readSamples(long first, int count, double[] target) {
+            int copied = 0;
+            while (copied < count) {
+                long sample = first + copied;
+                int window = (int) (sample / samplesPerWindow);
+                int offset = (int) (sample % samplesPerWindow);
+                int length = Math.min(count - copied, samplesPerWindow - offset);
+                windows[window].get(offset * recordDoubles, target, copied * recordDoubles,
+                        length * recordDoubles);
+                copied += length;
+            }
+        }
+
+        // mean loss over count records of batch, adds nothing to gradient when it is null
+        double computeSampleBatch(double[] variables, double[] batch, int count, double[] gradient) {
+            if (gradient != null) {
+                Arrays.fill(gradient, 0);
+            }
+            double total = 0;
+            for (int r = 0; r < count; r++) {
+                int base = r * recordDoubles;
+                double prediction = 0;
+                for (int j = 0; j < features; j++) {
+                    prediction += variables[j] * batch[base + j];
+                }
+                double target = batch[base + features];
+                double derivative;
+                if (loss == Loss.SQUARED) {
+                    double residual = prediction - target;
+                    total += 0.5 * residual * residual;
+                    derivative = residual;
+                } else {
+                    // log(1 + e^p) - y p, written to stay finite for large |p|
+                    total += Math.max(prediction, 0) + Math.log1p(Math.exp(-Math.abs(prediction)))
+                            - target * prediction;
+                    derivative = 1 / (1 + Math.exp(-prediction)) - target;
+                }
+                if (gradient != null) {
+                    for (int j = 0; j < features; j++) {
+                        gradient[j] += derivative * batch[base + j];
+                    }
+                }
+            }
+            if (gradient != null) {
+                for (int j = 0; j < features; j++) {
+                    gradient[j] /= count;
+                }
+            }
+            return total / count;
+        }
+
+        // one pass over every window, batch means are combined weighted by their size
+        private double fullPass(double[] variables, double[] gradient) {
+            int chunk = Math.max(1, (1 << 16) / recordDoubles);
+            double[] block = new double[chunk * recordDoubles];
+            double[] blockGradient = gradient == null ? null : new double[features];
+            if (gradient != null) {
+                Arrays.fill(gradient, 0);
+            }
+            double total = 0;
+            for (long first = 0; first < samples; first += chunk) {
+                int count = (int) Math.min(chunk, samples - first);
+                readSamples(first, count, block);
+                total += computeSampleBatch(variables, block, count, blockGradient) * count;
+                if (gradient != null) {
+                    for (int j = 0; j < features; j++) {
+                        gradient[j] += blockGradient[j] * count;
+                    }
+                }
+            }
+            if (gradient != null) {
+                for (int j = 0; j < features; j++) {
+                    gradient[j] /= samples;
+                }
+            }
+            return total / samples;
+        }
+
+        @Override
+        public double compute(double[] variables) {
+            return fullPass(variables, null);
+        }
+
+        @Override
+        public void computeGradient(double[] variables, double[] gradient) {
+            fullPass(variables, gradient);
+        }
+
+        @Override
+        public double computeValueAndGradient(double[] variables, double[] gradient) {
+            return fullPass(variables, gradient);
+        }
+
+        @Override
+        public double computeGradientMagnitude(double[] variables) {
+            double magnitude = 0;
+            for (double variable : variables) {
+                magnitude += variable * variable;
+            }
+            return Math.sqrt(magnitude);
+        }
+
+        @Override
+        public double[] getBounds() {
+            return new double[] { Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY };
+        }
+
+        @Override
+        public String getName() {
+            return loss == Loss.SQUARED ? "Least_Squares" : "Logistic";
+        }
+
+        @Override
+        public int getDimensionality() {
+            return features;
+        }
+
+        @Override
+        public String getConfigurationKey() {
+            return configurationKey;
+        }
+
+        // --convert-dataset: CSV rows of feature values followed by the target, written in the layout above
+        static long convertCsv(BufferedReader csv, Path output) throws IOException {
+            try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+                int features = -1;
+                long samples = 0;
+                // header is rewritten once the sample count is known
+                buffer.position(HEADER_BYTES);
+                String line;
+                while ((line = csv.readLine()) != null) {
+                    if (line.isBlank() || line.startsWith("#")) {
+                        continue;
+                    }
+                    String[] fields = line.split(",");
+                    if (features < 0) {
+                        features = fields.length - 1;
+                        if (features < 1) {
+                            throw new IllegalArgumentException("Error: Each row needs features and a target.");
+                        }
+                    } else if (fields.length != features + 1) {
+                        throw new IllegalArgumentException("Error: Row " + (samples + 1) + " has "
+                                + fields.length + " fields, expected " + (features + 1) + ".");
+                    }
+                    for (String field : fields) {
+                        if (buffer.remaining() < 8) {
+                            buffer.flip();
+                            while (buffer.hasRemaining()) {
+                                channel.write(buffer);
+                            }
+                            buffer.clear();
+                        }
+                        buffer.putDouble(Double.parseDouble(field.trim()));
+                    }
+                    samples++;
+                }
+                if (samples == 0) {
+                    throw new IllegalArgumentException("Error: The CSV file has no rows.");
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(DATASET_MAGIC).putInt(features).putLong(samples).flip();
+                channel.write(header, 0);
+                return samples;
+            }
+        }
+    }
+
+    // Reads mini-batches on a background thread so the next batch is copied out of the mapping while
+    // the current one is being used. Batches are contiguous runs of samples, which keeps reads
+    // sequential within a batch; their order is reshuffled every epoch with an affine permutation
+    // (multiplier * i + offset) mod batches, so no index array is needed for huge datasets.
+    static final class BatchPrefetcher implements Closeable {
+        static final int DEPTH = 2;
+
+        static final class Batch {
+            final double[] data;
+            int count;
+            RuntimeException error;
+
+            Batch(int length) {
+                data = new double[length];
+            }
+        }
+
+        private final DatasetObjective dataset;
+        private final int batchSize;
+        private final long batches;
+        private final SplittableRandom random;
+        private final ArrayBlockingQueue<Batch> ready = new ArrayBlockingQueue<>(DEPTH);
+        private final ArrayBlockingQueue<Batch> free = new ArrayBlockingQueue<>(DEPTH);
+        private final Thread thread;
+
+        BatchPrefetcher(DatasetObjective dataset, int batchSize, long seed) {
+            this.dataset = dataset;
+            this.batchSize = (int) Math.min(batchSize, dataset.getSampleCount());
+            this.batches = (dataset.getSampleCount() + this.batchSize - 1) / this.batchSize;
+            this.random = new SplittableRandom(seed);
+            for (int i = 0; i < DEPTH; i++) {
+                free.add(new Batch(this.batchSize * dataset.getRecordDoubles()));
+            }
+            thread = new Thread(this::run, "batch-prefetcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void run() {
+            try {
+                while (true) {
+                    long multiplier = 1;
+                    long offset = 0;
+                    if (batches > 1) {
+                        do {
+                            multiplier = 1 + random.nextLong(batches - 1);
+                        } while (StartSampler.gcd(multiplier, batches) != 1);
+                        offset = random.nextLong(batches);
+                    }
+                    for (long i = 0; i < batches; i++) {
+                        // the product stays below 2^63 for any dataset that fits on a disk
+                        long index = Math.floorMod(multiplier * i + offset, batches);
+                        long first = index * batchSize;
+                        Batch batch = free.take();
+                        try {
+                            batch.count = (int) Math.min(batchSize, dataset.getSampleCount() - first);
+                            dataset.readSamples(first, batch.count, batch.data);
+                        } catch (RuntimeException e) {
+                            batch.error = e;
+                        }
+                        ready.put(batch);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // closed
+            }
+        }
+
+        Batch take() throws InterruptedException {
+            Batch batch = ready.take();
+            if (batch.error != null) {
+                throw batch.error;
+            }
+            return batch;
+        }
+
+        void release(Batch batch) {
+            free.add(batch);
+        }
+
+        @Override
+        public void close() {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Mini-batch stochastic gradient descent for DatasetObjective. Each iteration takes the next
+    // prefetched batch, steps against its mean gradient with stepSize * decay^(t / decayEvery), and
+    // tracks an exponential moving average of the batch gradient magnitude, which is what the
+    // tolerance is compared against because single batch gradients are noisy. The reported
+    // objective value per iteration is the batch loss, the final value is one full pass.
+    public static class StochasticSolver implements Solver {
+        // weight of the newest batch gradient magnitude in the moving average
+        static final double SMOOTHING = 0.1;
+
+        private double[] gradient;
+
+        @Override
+        public String getName() {
+            return "Stochastic Gradient Descent";
+        }
+
+        @Override
+        public OptimizationResult solve(ObjectiveFunction objectiveFunction, double[] variables, int iterations,
+                double tolerance, double stepSize, int dimensionality, OptimizerOptions options,
+                IterationListener listener) {
+            if (objectiveFunction instanceof ParallelObjectiveFunction) {
+                objectiveFunction = ((ParallelObjectiveFunction) objectiveFunction).getDelegate();
+            }
+            if (!(objectiveFunction instanceof DatasetObjective)) {
+                throw new IllegalArgumentException("Error: The stochastic solver needs a data-backed objective.");
+            }
+            // the loop below neither checkpoints nor measures phases, so refuse those settings
+            // instead of silently running without them
+            options.requireNoCheckpoint("with the stochastic solver");
+            if (options.metrics) {
+                throw new IllegalArgumentException("Error: Metrics are not supported with the stochastic solver.");
+            }
+            DatasetObjective dataset = (DatasetObjective) objectiveFunction;
+            boolean compatible = options.getNumericMode() == NumericMode.COMPATIBLE;
+            gradient = DescentSolver.buffer(gradient, dimensionality);
+            if (compatible) {
+                for (int i = 0; i < variables.length; i++) {
+                    variables[i] = SteepestDescentOptimizer.floorTo5Decimals(variables[i]);
+                }
+            }
+            int k = iterations;
+            long evaluations = 0;
+            double current_tolerance = Double.MAX_VALUE;
+            boolean stopped = false;
+            boolean diverged = false;
+            try (BatchPrefetcher prefetcher = new BatchPrefetcher(dataset, options.batchSize, options.seed)) {
+                while (current_tolerance > tolerance && k > 0) {
+                    int t = iterations - k;
+                    BatchPrefetcher.Batch batch = prefetcher.take();
+                    double obj_func_value = dataset.computeSampleBatch(variables, batch.data, batch.count,
+                            gradient);
+                    prefetcher.release(batch);
+                    evaluations++;
+                    if (!Double.isFinite(obj_func_value) || obj_func_value > options.maxValue) {
+                        diverged = true;
+                        break;
+                    }
+                    if (compatible) {
+                        for (int i = 0; i < gradient.length; i++) {
+                            gradient[i] = SteepestDescentOptimizer.floorTo5DecimalsXValues(gradient[i]);
+                        }
+                    }
+                    listener.onIteration(t + 1, obj_func_value, variables, t > 0 ? current_tolerance : Double.NaN);
+                    if (listener.isStopRequested()) {
+                        stopped = true;
+                        break;
+                    }
+                    double magnitude = dataset.computeGradientMagnitude(gradient);
+                    current_tolerance = t == 0 ? magnitude
+                            : (1 - SMOOTHING) * current_tolerance + SMOOTHING * magnitude;
+                    double step = stepSize * Math.pow(options.decay, t / options.decayEvery);
+                    for (int i = 0; i < variables.length; i++) {
+                        double next = variables[i] - step * gradient[i];
+                        variables[i] = compatible ? SteepestDescentOptimizer.floorTo5Decimals(next) : next;
+                    }
+                    k--;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stopped = true;
+            }
+            double obj_func_value = dataset.compute(variables);
+            if (current_tolerance < tolerance) {
+                listener.onConverged(iterations - k + 1, obj_func_value, variables, current_tolerance);
+            }
+            TerminationReason reason = diverged ? TerminationReason.DIVERGED
+                    : stopped ? TerminationReason.STOPPED
+                            : k != 0 ? TerminationReason.CONVERGED : TerminationReason.MAX_ITERATIONS;
+            OptimizationResult result = new OptimizationResult(variables.clone(), obj_func_value, iterations - k,
+                    reason, StepPolicy.FIXED, evaluations + 1, evaluations, null);
+            listener.onComplete(result);
+            return result;
+        }
+    }
+
+    public enum NumericMode {
+        // floors x and rounds the gradient to 5 decimals every iteration, matching the original output
+        COMPATIBLE,
+        // iterates in raw doubles and only quantizes values when they are written out
+        FULL_PRECISION;
+
+        static NumericMode fromName(String name) {
+            switch (name.trim().toLowerCase()) {
+                case "compatible":
+                    return COMPATIBLE;
+                case "full":
+                case "full_precision":
+                    return FULL_PRECISION;
+                default:
+                    throw new IllegalArgumentException("Error: Unknown numeric mode.");
+            }
+        }
+    }
+
+    public enum StepPolicy {
+        // constant step size every iteration, the original behavior
+        FIXED,
+        // backtracking from the step size until the Armijo sufficient decrease condition holds
+        ARMIJO,
+        // bracketing and zoom search for a step satisfying the strong Wolfe conditions
+        STRONG_WOLFE;
+
+        static StepPolicy fromName(String name) {
+            switch (name.trim().toLowerCase()) {
+                case "fixed":
+                    return FIXED;
+                case "armijo":
+                    return ARMIJO;
+                case "wolfe":
+                case "strong_wolfe":
+                    return STRONG_WOLFE;
+                default:
+                    throw new IllegalArgumentException("Error: Unknown step policy.");
+            }
+        }
+    }
+
+    public static class OptimizerOptions {
+        // null until set, see getNumericMode()
+        NumericMode numericMode;
+        StepPolicy stepPolicy = StepPolicy.FIXED;
+        SolverType solverType = SolverType.STEEPEST_DESCENT;
+        double momentum = 0.9;
+        int historySize = 10;
+        boolean parallel;
+        Path checkpointPath;
+        int checkpointInterval = 1000;
+        boolean resume;
+        boolean metrics;
+        int batchSize = 256;
+        double decay = 0.5;
+        int decayEvery = 1000;
+        long seed;
+        // optional stopping criteria, 0 (and infinity for maxValue) means off, see ConvergenceMonitor
+        double objectiveChange;
+        double stepNorm;
+        int stallWindow;
+        double maxValue = Double.POSITIVE_INFINITY;
+        // text trace sampling, see TextTraceWriter
+        int sampleEvery = 1;
+
+        public OptimizerOptions numericMode(NumericMode numericMode) {
+            this.numericMode = numericMode;
+            return this;
+        }
+
+        public OptimizerOptions stepPolicy(StepPolicy stepPolicy) {
+            this.stepPolicy = stepPolicy;
+            return this;
+        }
+
+        public OptimizerOptions solverType(SolverType solverType) {
+            this.solverType = solverType;
+            return this;
+        }
+
+        // evaluate high-dimensional objectives on the common ForkJoinPool
+        public OptimizerOptions parallel(boolean parallel) {
+            this.parallel = parallel;
+            return this;
+        }
+
+        public OptimizerOptions momentum(double momentum) {
+            // at 1 or above the velocity never decays and the iterates oscillate or grow without bound
+            if (!(momentum >= 0 && momentum < 1)) {
+                throw new IllegalArgumentException("Error: Momentum must be in [0, 1).");
+            }
+            this.momentum = momentum;
+            return this;
+        }
+
+        public OptimizerOptions historySize(int historySize) {
+            if (historySize < 1) {
+                throw new IllegalArgumentException("Error: History size must be at least 1.");
+            }
+            this.historySize = historySize;
+            return this;
+        }
+
+        // samples per mini-batch for the stochastic solver
+        public OptimizerOptions batchSize(int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("Error: Batch size must be at least 1.");
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        // step decay schedule of the stochastic solver: the step is multiplied by decay every decayEvery
+        // iterations
+        public OptimizerOptions stepDecay(double decay, int decayEvery) {
+            if (!(decay > 0 && decay <= 1) || decayEvery < 1) {
+                throw new IllegalArgumentException("Error: Decay must be in (0, 1] with an interval of at least 1.");
+            }
+            this.decay = decay;
+            this.decayEvery = decayEvery;
+            return this;
+        }
+
+        // seed for the stochastic solver's batch order
+        public OptimizerOptions seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        // stops once |f(x_k) - f(x_k-1)| <= change * |f(x_k-1)|, 0 turns it off
+        public OptimizerOptions objectiveChange(double change) {
+            if (!(change >= 0)) {
+                throw new IllegalArgumentException("Error: Objective change threshold must not be negative.");
+            }
+            this.objectiveChange = change;
+            return this;
+        }
+
+        // stops once the last step moved the variables by at most norm, 0 turns it off
+        public OptimizerOptions stepNorm(double norm) {
+            if (!(norm >= 0)) {
+                throw new IllegalArgumentException("Error: Step norm threshold must not be negative.");
+            }
+            this.stepNorm = norm;
+            return this;
+        }
+
+        // stops once the best objective value has not improved for window iterations, 0 turns it off
+        public OptimizerOptions stallWindow(int window) {
+            if (window < 0) {
+                throw new IllegalArgumentException("Error: Stall window must not be negative.");
+            }
+            this.stallWindow = window;
+            return this;
+        }
+
+        // treats objective values above maxValue as divergence, values that are not finite always are
+        public OptimizerOptions maxValue(double maxValue) {
+            if (Double.isNaN(maxValue)) {
+                throw new IllegalArgumentException("Error: Maximum objective value must be a number.");
+            }
+            this.maxValue = maxValue;
+            return this;
+        }
+
+        // saves the loop state to path every interval update steps, see DescentSolver
+        public OptimizerOptions checkpoint(Path path, int interval) {
+            if (interval < 1) {
+                throw new IllegalArgumentException("Error: Checkpoint interval must be at least 1.");
+            }
+            this.checkpointPath = path;
+            this.checkpointInterval = interval;
+            return this;
+        }
+
+        // true for resume, checkpoint=<path> and checkpoint-every=<iterations>. A checkpoint file belongs
+        // to one run, so modes that share OptimizerOptions across jobs or take settings from clients
+        // refuse these settings.
+        static boolean isCheckpointSetting(String setting) {
+            String key = setting.trim().toLowerCase();
+            int equals = key.indexOf('=');
+            if (equals > 0) {
+                key = key.substring(0, equals).trim();
+            }
+            return key.equals("resume") || key.equals("checkpoint") || key.equals("checkpoint-every");
+        }
+
+        // like parseSetting, but rejects the checkpoint settings for the named mode
+        void parseSharedSetting(String setting, String mode) {
+            if (isCheckpointSetting(setting)) {
+                throw new IllegalArgumentException("Error: Checkpoint settings are not supported " + mode + ".");
+            }
+            parseSetting(setting);
+        }
+
+        // for callers that run many jobs from one OptimizerOptions
+        void requireNoCheckpoint(String mode) {
+            if (checkpointPath != null || resume) {
+                throw new IllegalArgumentException("Error: Checkpoint settings are not supported " + mode + ".");
+            }
+        }
+
+        // continue from the checkpoint file when one exists
+        public OptimizerOptions resume(boolean resume) {
+            this.resume = resume;
+            return this;
+        }
+
+        // collect per-run RunMetrics and publish them to the OptimizerMetrics MBean
+        public OptimizerOptions metrics(boolean metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        // write every sampleEvery-th iteration of the text trace, TextTraceWriter.ONLY_FINAL for just the last
+        public OptimizerOptions sampleEvery(int sampleEvery) {
+            if (sampleEvery < 0) {
+                throw new IllegalArgumentException("Error: Sampling interval must not be negative.");
+            }
+            this.sampleEvery = sampleEvery;
+            return this;
+        }
+
+        // COMPATIBLE unless set, except for the stochastic solver: flooring every weight to 5 decimals
+        // after each small step would bias the weights towards minus infinity
+        public NumericMode getNumericMode() {
+            if (numericMode != null) {
+                return numericMode;
+            }
+            return solverType == SolverType.STOCHASTIC ? NumericMode.FULL_PRECISION : NumericMode.COMPATIBLE;
+        }
+
+        public StepPolicy getStepPolicy() {
+            return stepPolicy;
+        }
+
+        public Path getCheckpointPath() {
+            return checkpointPath;
+        }
+
+        public int getCheckpointInterval() {
+            return checkpointInterval;
+        }
+
+        public boolean isResume() {
+            return resume;
+        }
+
+        public boolean isMetrics() {
+            return metrics;
+        }
+
+        public int getSampleEvery() {
+            return sampleEvery;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public double getDecay() {
+            return decay;
+        }
+
+        public int getDecayEvery() {
+            return decayEvery;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public double getObjectiveChange() {
+            return objectiveChange;
+        }
+
+        public double getStepNorm() {
+            return stepNorm;
+        }
+
+        public int getStallWindow() {
+            return stallWindow;
+        }
+
+        public double getMaxValue() {
+            return maxValue;
+        }
+
+        public SolverType getSolverType() {
+            return solverType;
+        }
+
+        public double getMomentum() {
+            return momentum;
+        }
+
+        public int getHistorySize() {
+            return historySize;
+        }
+
+        public boolean isParallel() {
+            return parallel;
+        }
+
+        // applies one optional setting from a config line or command line argument, either a
+        // numeric mode, step policy or solver name, parallel, resume, metrics, or momentum=<value> /
+        // history=<size> / checkpoint=<path> / checkpoint-every=<iterations> / batch=<samples> /
+        // decay=<factor> / decay-every=<iterations> / seed=<seed> / objective-change=<relative> /
+        // step-norm=<norm> / stall=<iterations> / max-value=<value> / sample=<iterations>|final
+        void parseSetting(String setting) {
+            setting = setting.trim();
+            if (setting.equalsIgnoreCase("parallel")) {
+                parallel = true;
+                return;
+            }
+            if (setting.equalsIgnoreCase("resume")) {
+                resume = true;
+                return;
+            }
+            if (setting.equalsIgnoreCase("metrics")) {
+                metrics = true;
+                return;
+            }
+            int equals = setting.indexOf('=');
+            if (equals > 0) {
+                String key = setting.substring(0, equals).trim().toLowerCase();
+                String value = setting.substring(equals + 1).trim();
+                try {
+                    switch (key) {
+                        case "momentum":
+                            momentum(Double.parseDouble(value));
+                            return;
+                        case "history":
+                            historySize(Integer.parseInt(value));
+                            return;
+                        case "checkpoint":
+                            checkpoint(Paths.get(value), checkpointInterval);
+                            return;
+                        case "checkpoint-every":
+                            checkpoint(checkpointPath, Integer.parseInt(value));
+                            return;
+                        case "batch":
+                            batchSize(Integer.parseInt(value));
+                            return;
+                        case "decay":
+                            stepDecay(Double.parseDouble(value), decayEvery);
+                            return;
+                        case "decay-every":
+                            stepDecay(decay, Integer.parseInt(value));
+                            return;
+                        case "seed":
+                            seed(Long.parseLong(value));
+                            return;
+                        case "objective-change":
+                            objectiveChange(Double.parseDouble(value));
+                            return;
+                        case "step-norm":
+                            stepNorm(Double.parseDouble(value));
+                            return;
+                        case "stall":
+                            stallWindow(Integer.parseInt(value));
+                            return;
+                        case "max-value":
+                            maxValue(Double.parseDouble(value));
+                            return;
+                        case "sample":
+                            sampleEvery(value.equalsIgnoreCase("final") ? TextTraceWriter.ONLY_FINAL
+                                    : Integer.parseInt(value));
+                            return;
+                        default:
+                            break;
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Error: Invalid value for " + key + ".");
+                }
+                throw new IllegalArgumentException("Error: Unknown setting " + setting + ".");
+            }
+            try {
+                numericMode = NumericMode.fromName(setting);
+                return;
+            } catch (IllegalArgumentException e) {
+                // not a numeric mode, try the other settings
+            }
+            try {
+                stepPolicy = StepPolicy.fromName(setting);
+                return;
+            } catch (IllegalArgumentException e) {
+                // not a step policy either
+            }
+            try {
+                solverType = SolverType.fromName(setting);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Error: Unknown setting " + setting + ".");
+            }
+        }
+    }
+
+    // why a run ended, see OptimizationResult.getTerminationReason
+    public enum TerminationReason {
+        CONVERGED(true, "Convergence reached"),
+        MAX_ITERATIONS(false, "Maximum iterations reached without satisfying the tolerance"),
+        STOPPED(false, "Optimization stopped before satisfying the tolerance"),
+        OBJECTIVE_CHANGE(true, "Relative objective change fell below the threshold"),
+        STEP_NORM(true, "Step norm fell below the threshold"),
+        STALLED(false, "No improvement within the stall window"),
+        DIVERGED(false, "Optimization diverged"),
+        LINE_SEARCH_FAILED(false, "Line search found no step that decreases the objective");
+
+        private final boolean converged;
+        private final String description;
+
+        TerminationReason(boolean converged, String description) {
+            this.converged = converged;
+            this.description = description;
+        }
+
+        public boolean isConverged() {
+            return converged;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    // The optional stopping criteria of OptimizerOptions, checked once per iteration after the
+    // gradient tolerance. Only created when at least one is on, so default runs pay a null check.
+    // The state is part of checkpoints so resumed runs stop at the same iteration.
+    static final class ConvergenceMonitor {
+        private final double objectiveChange;
+        private final double stepNorm;
+        private final int stallWindow;
+        private boolean hasPrevious;
+        private double previousValue;
+        private double bestValue = Double.POSITIVE_INFINITY;
+        private int sinceBest;
+        // last iterate, only kept for the step norm criterion
+        private final double[] previousVariables;
+
+        private ConvergenceMonitor(OptimizerOptions options, int dimensionality) {
+            objectiveChange = options.objectiveChange;
+            stepNorm = options.stepNorm;
+            stallWindow = options.stallWindow;
+            previousVariables = stepNorm > 0 ? new double[dimensionality] : null;
+        }
+
+        static boolean isEnabled(OptimizerOptions options) {
+            return options.objectiveChange > 0 || options.stepNorm > 0 || options.stallWindow > 0;
+        }
+
+        static ConvergenceMonitor create(OptimizerOptions options, int dimensionality) {
+            return isEnabled(options) ? new ConvergenceMonitor(options, dimensionality) : null;
+        }
+
+        // reason to stop at the current iterate, or null to keep going
+        TerminationReason check(double value, double[] variables) {
+            TerminationReason reason = null;
+            if (hasPrevious) {
+                if (objectiveChange > 0
+                        && Math.abs(value - previousValue) <= objectiveChange * Math.abs(previousValue)) {
+                    reason = TerminationReason.OBJECTIVE_CHANGE;
+                } else if (previousVariables != null && stepNorm(variables) <= stepNorm) {
+                    reason = TerminationReason.STEP_NORM;
+                }
+            }
+            if (value < bestValue) {
+                bestValue = value;
+                sinceBest = 0;
+            } else if (++sinceBest >= stallWindow && stallWindow > 0 && reason == null) {
+                reason = TerminationReason.STALLED;
+            }
+            hasPrevious = true;
+            previousValue = value;
+            if (previousVariables != null) {
+                System.arraycopy(variables, 0, previousVariables, 0, previousVariables.length);
+            }
+            return reason;
+        }
+
+        private double stepNorm(double[] variables) {
+            double sum = 0;
+            for (int i = 0; i < previousVariables.length; i++) {
+                double step = variables[i] - previousVariables[i];
+                sum += step * step;
+            }
+            return Math.sqrt(sum);
+        }
+
+        void save(DataOutputStream out) throws IOException {
+            out.writeBoolean(hasPrevious);
+            out.writeDouble(previousValue);
+            out.writeDouble(bestValue);
+            out.writeInt(sinceBest);
+            if (previousVariables != null) {
+                DescentSolver.writeDoubles(out, previousVariables, previousVariables.length);
+            }
+        }
+
+        void restore(DataInputStream in) throws IOException {
+            hasPrevious = in.readBoolean();
+            previousValue = in.readDouble();
+            bestValue = in.readDouble();
+            sinceBest = in.readInt();
+            if (previousVariables != null) {
+                DescentSolver.readDoubles(in, previousVariables, previousVariables.length);
+            }
+        }
+    }
+
+    public static class OptimizationResult {
+        private final double[] variables;
+        private final double objectiveValue;
+        private final int iterations;
+        private final TerminationReason terminationReason;
+        private final StepPolicy stepPolicy;
+        private final long functionEvaluations;
+        private final long gradientEvaluations;
+        private final RunMetrics metrics;
+
+        OptimizationResult(double[] variables, double objectiveValue, int iterations,
+                TerminationReason terminationReason, StepPolicy stepPolicy, long functionEvaluations,
+                long gradientEvaluations, RunMetrics metrics) {
+            this.metrics = metrics;
+            this.variables = variables;
+            this.objectiveValue = objectiveValue;
+            this.iterations = iterations;
+            this.terminationReason = terminationReason;
+            this.stepPolicy = stepPolicy;
+            this.functionEvaluations = functionEvaluations;
+            this.gradientEvaluations = gradientEvaluations;
+        }
+
+        public double[] getVariables() {
+            return variables;
+        }
+
+        public double getObjectiveValue() {
+            return objectiveValue;
+        }
+
+        // number of update steps taken
+        public int getIterations() {
+            return iterations;
+        }
+
+        // true for the gradient tolerance and for the objective change and step norm criteria
+        public boolean isConverged() {
+            return terminationReason.isConverged();
+        }
+
+        // true when the listener asked the run to stop
+        public boolean isStoppedEarly() {
+            return terminationReason == TerminationReason.STOPPED;
+        }
+
+        public TerminationReason getTerminationReason() {
+            return terminationReason;
+        }
+
+        public StepPolicy getStepPolicy() {
+            return stepPolicy;
+        }
+
+        public long getFunctionEvaluations() {
+            return functionEvaluations;
+        }
+
+        public long getGradientEvaluations() {
+            return gradientEvaluations;
+        }
+
+        // null unless the run had metrics enabled
+        public RunMetrics getMetrics() {
+            return metrics;
+        }
+    }
+
+    // Instrumentation for one run, only created when OptimizerOptions.metrics is on, so a run without
+    // it pays a null check per phase. Phases are timed back to back inside each iteration; line search
+    // evaluations happen inside the update phase.
+    public static final class RunMetrics {
+        static final int CHECKPOINT = 0;
+        static final int EVALUATION = 1;
+        static final int ROUNDING = 2;
+        static final int LISTENER = 3;
+        static final int TOLERANCE = 4;
+        static final int UPDATE = 5;
+        static final String[] PHASE_NAMES = { "checkpoint", "evaluation", "rounding", "listener", "tolerance",
+                "update" };
+
+        final long[] phaseNanos = new long[PHASE_NAMES.length];
+        String solver;
+        long iterations;
+        long functionEvaluations;
+        long gradientEvaluations;
+        long totalNanos;
+        // bytes allocated by the calling thread, -1 when the JVM cannot tell
+        long allocatedBytes = -1;
+
+        // adds the time since lapStart to phase and returns the new lap start
+        long lap(int phase, long lapStart) {
+            long now = System.nanoTime();
+            phaseNanos[phase] += now - lapStart;
+            return now;
+        }
+
+        static long threadAllocatedBytes() {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+                        Thread.currentThread().getId());
+            }
+            return -1;
+        }
+
+        public long getIterations() {
+            return iterations;
+        }
+
+        public long getFunctionEvaluations() {
+            return functionEvaluations;
+        }
+
+        public long getGradientEvaluations() {
+            return gradientEvaluations;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getPhaseNanos(int phase) {
+            return phaseNanos[phase];
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        public double getIterationsPerSecond() {
+            return totalNanos == 0 ? 0 : iterations * 1e9 / totalNanos;
+        }
+
+        // one-line summary for logs and the server response
+        public String toJson() {
+            StringBuilder sb = new StringBuilder("{\"solver\":");
+            Json.appendString(sb, solver);
+            sb.append(",\"iterations\":").append(iterations);
+            sb.append(",\"functionEvaluations\":").append(functionEvaluations);
+            sb.append(",\"gradientEvaluations\":").append(gradientEvaluations);
+            sb.append(",\"totalNanos\":").append(totalNanos);
+            sb.append(",\"iterationsPerSecond\":");
+            Json.appendNumber(sb, getIterationsPerSecond());
+            sb.append(",\"allocatedBytes\":").append(allocatedBytes);
+            sb.append(",\"phaseNanos\":{");
+            for (int i = 0; i < PHASE_NAMES.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append('"').append(PHASE_NAMES[i]).append("\":").append(phaseNanos[i]);
+            }
+            sb.append("}}");
+            return sb.toString();
+        }
+    }
+
+    public interface OptimizerMetricsMXBean {
+        long getRuns();
+
+        long getIterations();
+
+        long getFunctionEvaluations();
+
+        long getGradientEvaluations();
+
+        long getTotalNanos();
+
+        long getEvaluationNanos();
+
+        long getRoundingNanos();
+
+        long getListenerNanos();
+
+        long getToleranceNanos();
+
+        long getUpdateNanos();
+
+        long getCheckpointNanos();
+
+        long getAllocatedBytes();
+
+        double getLastIterationsPerSecond();
+
+        String getLastRunSummary();
+
+        void reset();
+    }
+
+    // Totals over every run that had metrics enabled, registered with the platform MBean server on
+    // first use as steepest_descent_optimizer:type=OptimizerMetrics.
+    public static final class OptimizerMetrics implements OptimizerMetricsMXBean {
+        static final String OBJECT_NAME = "steepest_descent_optimizer:type=OptimizerMetrics";
+        private static final OptimizerMetrics INSTANCE = new OptimizerMetrics();
+        private static volatile boolean registered;
+
+        private final LongAdder runs = new LongAdder();
+        private final LongAdder iterations = new LongAdder();
+        private final LongAdder functionEvaluations = new LongAdder();
+        private final LongAdder gradientEvaluations = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder[] phaseNanos = new LongAdder[RunMetrics.PHASE_NAMES.length];
+        private final LongAdder allocatedBytes = new LongAdder();
+        private volatile RunMetrics lastRun;
+
+        private OptimizerMetrics() {
+            for (int i = 0; i < phaseNanos.length; i++) {
+                phaseNanos[i] = new LongAdder();
+            }
+        }
+
+        public static OptimizerMetrics getInstance() {
+            return INSTANCE;
+        }
+
+        static void record(RunMetrics metrics) {
+            register();
+            INSTANCE.runs.increment();
+            INSTANCE.iterations.add(metrics.iterations);
+            INSTANCE.functionEvaluations.add(metrics.functionEvaluations);
+            INSTANCE.gradientEvaluations.add(metrics.gradientEvaluations);
+            INSTANCE.totalNanos.add(metrics.totalNanos);
+            for (int i = 0; i < metrics.phaseNanos.length; i++) {
+                INSTANCE.phaseNanos[i].add(metrics.phaseNanos[i]);
+            }
+            if (metrics.allocatedBytes > 0) {
+                INSTANCE.allocatedBytes.add(metrics.allocatedBytes);
+            }
+            INSTANCE.lastRun = metrics;
+        }
+
+        private static void register() {
+            if (registered) {
+                return;
+            }
+            synchronized (OptimizerMetrics.class) {
+                if (registered) {
+                    return;
+                }
+                try {
+                    ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+                } catch (InstanceAlreadyExistsException e) {
+                    // registered by another class loader copy, keep using ours locally
+                } catch (JMException e) {
+                    throw new IllegalStateException("Error: Could not register " + OBJECT_NAME + ".", e);
+                }
+                registered = true;
+            }
+        }
+
+        @Override
+        public long getRuns() {
+            return runs.sum();
+        }
+
+        @Override
+        public long getIterations() {
+            return iterations.sum();
+        }
+
+        @Override
+        public long getFunctionEvaluations() {
+            return functionEvaluations.sum();
+        }
+
+        @Override
+        public long getGradientEvaluations() {
+            return gradientEvaluations.sum();
+        }
+
+        @Override
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        @Override
+        public long getEvaluationNanos() {
+            return phaseNanos[RunMetrics.EVALUATION].sum();
+        }
+
+        @Override
+        public long getRoundingNanos() {
+            return phaseNanos[RunMetrics.ROUNDING].sum();
+        }
+
+        @Override
+        public long getListenerNanos() {
+            return phaseNanos[RunMetrics.LISTENER].sum();
+        }
+
+        @Override
+        public long getToleranceNanos() {
+            return phaseNanos[RunMetrics.TOLERANCE].sum();
+        }
+
+        @Override
+        public long getUpdateNanos() {
+            return phaseNanos[RunMetrics.UPDATE].sum();
+        }
+
+        @Override
+        public long getCheckpointNanos() {
+            return phaseNanos[RunMetrics.CHECKPOINT].sum();
+        }
+
+        @Override
+        public long getAllocatedBytes() {
+            return allocatedBytes.sum();
+        }
+
+        @Override
+        public double getLastIterationsPerSecond() {
+            RunMetrics last = lastRun;
+            return last == null ? 0 : last.getIterationsPerSecond();
+        }
+
+        @Override
+        public String getLastRunSummary() {
+            RunMetrics last = lastRun;
+            return last == null ? "" : last.toJson();
+        }
+
+        @Override
+        public void reset() {
+            runs.reset();
+            iterations.reset();
+            functionEvaluations.reset();
+            gradientEvaluations.reset();
+            totalNanos.reset();
+            for (LongAdder phase : phaseNanos) {
+                phase.reset();
+            }
+            allocatedBytes.reset();
+            lastRun = null;
+        }
+    }
+
+    // JFR events, free when no recording has them enabled. Solvers only create them once the flight
+    // recorder is running, because the first event instance otherwise initializes JFR and costs a
+    // few hundred milliseconds of startup on every short run. The check is repeated every iteration,
+    // so when a recording starts during a run the run event begins at the iteration that saw it and
+    // isEnabled()/shouldCommit() decide from there.
+    @Name("optimizer.Iteration")
+    @Label("Optimizer Iteration")
+    @Category("Optimizer")
+    @StackTrace(false)
+    static final class IterationEvent extends Event {
+        @Label("Iteration")
+        int iteration;
+
+        @Label("Objective Value")
+        double objectiveValue;
+
+        @Label("Gradient Magnitude")
+        double tolerance;
+    }
+
+    @Name("optimizer.Run")
+    @Label("Optimizer Run")
+    @Category("Optimizer")
+    @StackTrace(false)
+    static final class RunEvent extends Event {
+        @Label("Objective Function")
+        String objectiveFunction;
+
+        @Label("Solver")
+        String solver;
+
+        @Label("Dimensionality")
+        int dimensionality;
+
+        @Label("Iterations")
+        int iterations;
+
+        @Label("Objective Value")
+        double objectiveValue;
+
+        @Label("Converged")
+        boolean converged;
+    }
+
+    public interface IterationListener {
+        // called before each update, currentTolerance is NaN on the first iteration and variables
+        // is the live array, so implementations must copy it to keep it
+        void onIteration(int iteration, double objectiveValue, double[] variables, double currentTolerance);
+
+        // called once with the point reached when the tolerance was satisfied
+        void onConverged(int iteration, double objectiveValue, double[] variables, double currentTolerance);
+
+        void onComplete(OptimizationResult result);
+
+        // polled after every onIteration, returning true ends the run before the next update
+        default boolean isStopRequested() {
+            return false;
+        }
+    }
+
+    public static class TextTraceWriter implements IterationListener {
+        // sampling value that writes only the last iteration
+        public static final int ONLY_FINAL = 0;
+
+        private final Consumer<String> lineSink;
+        private final int sampleEvery;
+        private final DecimalFormat df = new DecimalFormat("0.00000");
+        // last iteration that was skipped by sampling, written at the end if nothing newer was
+        private double[] pendingVariables;
+        private int pendingIteration;
+        private double pendingObjectiveValue;
+        private double pendingTolerance;
+        private boolean hasPending;
+        private boolean finalWritten;
+
+        public TextTraceWriter(Consumer<String> lineSink) {
+            this(lineSink, 1);
+        }
+
+        public TextTraceWriter(Consumer<String> lineSink, int sampleEvery) {
+            if (sampleEvery < 0) {
+                throw new IllegalArgumentException("Error: Sampling interval must not be negative.");
+            }
+            this.lineSink = lineSink;
+            this.sampleEvery = sampleEvery;
+        }
+
+        @Override
+        public void onIteration(int iteration, double objectiveValue, double[] variables, double currentTolerance) {
+            if (sampleEvery != ONLY_FINAL && (iteration - 1) % sampleEvery == 0) {
+                writeIteration(iteration, df.format(SteepestDescentOptimizer.floorTo5Decimals(objectiveValue)),
+                        variables, currentTolerance);
+                hasPending = false;
+                return;
+            }
+            if (pendingVariables == null) {
+                pendingVariables = new double[variables.length];
+            }
+            System.arraycopy(variables, 0, pendingVariables, 0, variables.length);
+            pendingIteration = iteration;
+            pendingObjectiveValue = objectiveValue;
+            pendingTolerance = currentTolerance;
+            hasPending = true;
+        }
+
+        @Override
+        public void onConverged(int iteration, double objectiveValue, double[] variables, double currentTolerance) {
+            writeIteration(iteration, String.valueOf(SteepestDescentOptimizer.floorTo5Decimals(objectiveValue)),
+                    variables, currentTolerance);
+            finalWritten = true;
+        }
+
+        @Override
+        public void onComplete(OptimizationResult result) {
+            if (hasPending && !finalWritten) {
+                writeIteration(pendingIteration,
+                        df.format(SteepestDescentOptimizer.floorTo5Decimals(pendingObjectiveValue)), pendingVariables,
+                        pendingTolerance);
+            }
+            hasPending = false;
+            // output result messages based on stopping conditions
+            TerminationReason reason = result.getTerminationReason();
+            if (reason == TerminationReason.CONVERGED) {
+                lineSink.accept("Convergence reached after " + (result.getIterations() + 1) + " iterations.");
+            } else if (reason == TerminationReason.STOPPED || reason == TerminationReason.MAX_ITERATIONS) {
+                lineSink.accept(reason.getDescription() + ".");
+            } else {
+                lineSink.accept(reason.getDescription() + " at iteration " + (result.getIterations() + 1) + ".");
+            }
+            lineSink.accept("");
+            if (result.getStepPolicy() != StepPolicy.FIXED) {
+                lineSink.accept("Function Evaluations: " + result.getFunctionEvaluations());
+                lineSink.accept("Gradient Evaluations: " + result.getGradientEvaluations());
+                lineSink.accept("");
+            }
+            if (result.getMetrics() != null) {
+                lineSink.accept("Metrics: " + result.getMetrics().toJson());
+                lineSink.accept("");
+            }
+            lineSink.accept("Optimization process completed.");
+        }
+
+        private void writeIteration(int iteration, String objectiveValue, double[] variables,
+                double currentTolerance) {
+            lineSink.accept("Iteration " + iteration + ":");
+            lineSink.accept("Objective Function Value: " + objectiveValue);
+            lineSink.accept("x-values: " + SteepestDescentOptimizer.arrayToString(variables));
+            if (!Double.isNaN(currentTolerance)) {
+                lineSink.accept(
+                        "Current Tolerance: " + df.format(SteepestDescentOptimizer.floorTo5Decimals(currentTolerance)));
+            }
+            lineSink.accept("");
+        }
+    }
+
+    public static class ChannelTraceWriter extends TextTraceWriter implements Closeable {
+        private final BufferedWriter writer;
+
+        private ChannelTraceWriter(BufferedWriter writer, int sampleEvery) {
+            super(line -> {
+                try {
+                    writer.write(line);
+                    writer.newLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, sampleEvery);
+            this.writer = writer;
+        }
+
+        // streams the text trace through a buffered file channel, gzip compressed when requested
+        public static ChannelTraceWriter open(Path path, int sampleEvery, boolean gzip) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            OutputStream out = Channels.newOutputStream(channel);
+            if (gzip) {
+                out = new GZIPOutputStream(out, 1 << 16);
+            }
+            return new ChannelTraceWriter(
+                    new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16), sampleEvery);
+        }
+
+        public void writeLine(String line) throws IOException {
+            writer.write(line);
+            writer.newLine();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    // Binary trajectory layout, all values little-endian:
+    // header: magic "SDTJ", version int, dimensionality int, iterations int, tolerance double,
+    // step size double, numeric mode int, name length int, UTF-8 name, zero padding to 8 bytes
+    // records: iteration long, objective value double, gradient norm double, dimensionality x doubles
+    // the gradient norm belongs to the record's own point. Listeners only learn it with the next
+    // iteration (the Current Tolerance of the text log lags by one), so the newest record stays in
+    // the buffer until then and the last record of a run has NaN. Version 1 files stored the lagged value.
+    public static class BinaryTrajectoryWriter implements IterationListener, Closeable {
+        static final int MAGIC = 0x4A544453; // "SDTJ" when read little-endian
+        static final int VERSION = 2;
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final int dimensionality;
+        // buffer index of the newest record's gradient norm, -1 once it is written out
+        private int pendingNorm = -1;
+
+        private BinaryTrajectoryWriter(FileChannel channel, int dimensionality, int recordSize) {
+            this.channel = channel;
+            this.dimensionality = dimensionality;
+            this.buffer = ByteBuffer.allocateDirect(Math.max(1 << 16, recordSize)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        public static BinaryTrajectoryWriter open(Path path, String objectiveFunctionName, int dimensionality,
+                int iterations, double tolerance, double stepSize, NumericMode numericMode) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            BinaryTrajectoryWriter writer = new BinaryTrajectoryWriter(channel, dimensionality,
+                    recordSize(dimensionality));
+            byte[] name = objectiveFunctionName.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer header = ByteBuffer.allocate(headerSize(name.length)).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(dimensionality).putInt(iterations);
+            header.putDouble(tolerance).putDouble(stepSize).putInt(numericMode.ordinal()).putInt(name.length);
+            header.put(name);
+            header.rewind();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            return writer;
+        }
+
+        static int headerSize(int nameLength) {
+            return (40 + nameLength + 7) & ~7;
+        }
+
+        static int recordSize(int dimensionality) {
+            return 24 + 8 * dimensionality;
+        }
+
+        @Override
+        public void onIteration(int iteration, double objectiveValue, double[] variables, double currentTolerance) {
+            writeRecord(iteration, objectiveValue, variables, currentTolerance);
+        }
+
+        @Override
+        public void onConverged(int iteration, double objectiveValue, double[] variables, double currentTolerance) {
+            writeRecord(iteration, objectiveValue, variables, currentTolerance);
+        }
+
+        @Override
+        public void onComplete(OptimizationResult result) {
+            flush();
+        }
+
+        // currentTolerance is the gradient norm at the previous record's point
+        private void writeRecord(int iteration, double objectiveValue, double[] variables, double currentTolerance) {
+            if (pendingNorm >= 0) {
+                buffer.putDouble(pendingNorm, currentTolerance);
+            }
+            if (buffer.remaining() < recordSize(dimensionality)) {
+                flush();
+            }
+            pendingNorm = buffer.position() + 16;
+            buffer.putLong(iteration).putDouble(objectiveValue).putDouble(Double.NaN);
+            buffer.asDoubleBuffer().put(variables, 0, dimensionality);
+            buffer.position(buffer.position() + 8 * dimensionality);
+        }
+
+        private void flush() {
+            pendingNorm = -1;
+            buffer.flip();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    public static class BinaryTrajectoryReader implements Closeable {
+        private final FileChannel channel;
+        private final String objectiveFunctionName;
+        private final int dimensionality;
+        private final int iterations;
+        private final double tolerance;
+        private final double stepSize;
+        private final NumericMode numericMode;
+        private final long headerSize;
+        private final int recordSize;
+        private final long recordCount;
+        // a single mapping is limited to 2 GB, so large files are mapped in whole-record segments
+        private final int recordsPerSegment;
+        private final MappedByteBuffer[] segments;
+
+        public BinaryTrajectoryReader(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                ByteBuffer fixed = ByteBuffer.allocate(40).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, fixed, 0);
+                if (fixed.remaining() < 40 || fixed.getInt() != BinaryTrajectoryWriter.MAGIC) {
+                    throw new IOException("Error: Not a trajectory file.");
+                }
+                int version = fixed.getInt();
+                if (version != BinaryTrajectoryWriter.VERSION) {
+                    throw new IOException("Error: Unsupported trajectory version " + version + ".");
+                }
+                dimensionality = fixed.getInt();
+                iterations = fixed.getInt();
+                tolerance = fixed.getDouble();
+                stepSize = fixed.getDouble();
+                numericMode = NumericMode.values()[fixed.getInt()];
+                int nameLength = fixed.getInt();
+                ByteBuffer name = ByteBuffer.allocate(nameLength);
+                readFully(channel, name, 40);
+                objectiveFunctionName = new String(name.array(), StandardCharsets.UTF_8);
+                headerSize = BinaryTrajectoryWriter.headerSize(nameLength);
+                recordSize = BinaryTrajectoryWriter.recordSize(dimensionality);
+                recordCount = (channel.size() - headerSize) / recordSize;
+                recordsPerSegment = Math.max(1, Integer.MAX_VALUE / recordSize);
+                segments = new MappedByteBuffer[(int) ((recordCount + recordsPerSegment - 1) / recordsPerSegment)];
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+        }
+
+        private ByteBuffer record(long index) {
+            if (index < 0 || index >= recordCount) {
+                throw new IndexOutOfBoundsException("Record " + index + " of " + recordCount);
+            }
+            int segment = (int) (index / recordsPerSegment);
+            if (segments[segment] == null) {
+                long first = (long) segment * recordsPerSegment;
+                long count = Math.min(recordsPerSegment, recordCount - first);
+                try {
+                    segments[segment] = channel.map(FileChannel.MapMode.READ_ONLY, headerSize + first * recordSize,
+                            count * recordSize);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                segments[segment].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            ByteBuffer slice = segments[segment].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            slice.position((int) (index % recordsPerSegment) * recordSize);
+            return slice;
+        }
+
+        public long getRecordCount() {
+            return recordCount;
+        }
+
+        public long getIteration(long index) {
+            ByteBuffer record = record(index);
+            return record.getLong(record.position());
+        }
+
+        public double getObjectiveValue(long index) {
+            ByteBuffer record = record(index);
+            return record.getDouble(record.position() + 8);
+        }
+
+        // gradient norm at the record's point, NaN for the last record of a run
+        public double getGradientNorm(long index) {
+            ByteBuffer record = record(index);
+            return record.getDouble(record.position() + 16);
+        }
+
+        public double getVariable(long index, int coordinate) {
+            if (coordinate < 0 || coordinate >= dimensionality) {
+                throw new IndexOutOfBoundsException("Coordinate " + coordinate + " of " + dimensionality);
+            }
+            ByteBuffer record = record(index);
+            return record.getDouble(record.position() + 24 + 8 * coordinate);
+        }
+
+        // copies the x-values of a record into a caller-owned buffer
+        public double[] getVariables(long index, double[] variables) {
+            ByteBuffer record = record(index);
+            record.position(record.position() + 24);
+            record.asDoubleBuffer().get(variables, 0, dimensionality);
+            return variables;
+        }
+
+        public String getObjectiveFunctionName() {
+            return objectiveFunctionName;
+        }
+
+        public int getDimensionality() {
+            return dimensionality;
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+
+        public double getTolerance() {
+            return tolerance;
+        }
+
+        public double getStepSize() {
+            return stepSize;
+        }
+
+        public NumericMode getNumericMode() {
+            return numericMode;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // Searches along a descent direction from the current point. Trial points are evaluated with
+    // computeValueAndGradient, so the accepted point's value and gradient are handed back to the
+    // solver and reused by the next iteration instead of being evaluated again.
+    static final class LineSearch {
+        static final double C1 = 1e-4;
+        static final double C2 = 0.9;
+        static final int MAX_EVALUATIONS = 40;
+
+        private final ObjectiveFunction objectiveFunction;
+        private final StepPolicy stepPolicy;
+        private final boolean compatible;
+        private final double[] trialVariables;
+        private final double[] trialGradient;
+        private double[] direction;
+        // step accepted by the previous search, used to warm start the next one
+        private double lastStep;
+        long evaluations;
+        // set by search() when no step decreased the objective, variables and gradient are then unchanged
+        boolean failed;
+
+        LineSearch(ObjectiveFunction objectiveFunction, StepPolicy stepPolicy, boolean compatible,
+                int dimensionality) {
+            this.objectiveFunction = objectiveFunction;
+            this.stepPolicy = stepPolicy;
+            this.compatible = compatible;
+            this.trialVariables = new double[dimensionality];
+            this.trialGradient = new double[dimensionality];
+        }
+
+        boolean canReuse(ObjectiveFunction objectiveFunction, StepPolicy stepPolicy, boolean compatible,
+                int dimensionality) {
+            return this.objectiveFunction == objectiveFunction && this.stepPolicy == stepPolicy
+                    && this.compatible == compatible && trialVariables.length == dimensionality;
+        }
+
+        void reset() {
+            lastStep = 0;
+            evaluations = 0;
+        }
+
+        // first trial step for solvers without a natural unit step, warm started from the last search
+        double initialStep(double stepSize) {
+            if (lastStep <= 0) {
+                return stepSize;
+            }
+            // backtracking only shrinks, so the configured step size stays the upper limit
+            return stepPolicy == StepPolicy.ARMIJO ? Math.min(stepSize, 2 * lastStep) : 2 * lastStep;
+        }
+
+        // moves variables and gradient to the accepted point along direction and returns its
+        // objective value, direction must be a descent direction. When no step decreases the objective,
+        // for example because the gradient does not match the function, failed is set and value returned.
+        double search(double[] variables, double value, double[] gradient, double[] direction, double step) {
+            this.direction = direction;
+            failed = false;
+            double slope = 0;
+            for (int i = 0; i < gradient.length; i++) {
+                slope += gradient[i] * direction[i];
+            }
+            if (!(slope < 0)) {
+                return fail(value);
+            }
+            if (stepPolicy == StepPolicy.ARMIJO) {
+                return backtrack(variables, value, gradient, slope, step);
+            }
+            return strongWolfe(variables, value, gradient, slope, step);
+        }
+
+        private double backtrack(double[] variables, double value, double[] gradient, double slope, double step) {
+            double trialValue = evaluate(variables, gradient, step);
+            for (int i = 1; i < MAX_EVALUATIONS && !(trialValue <= value + C1 * step * slope); i++) {
+                step *= 0.5;
+                trialValue = evaluate(variables, gradient, step);
+            }
+            if (!(trialValue <= value + C1 * step * slope)) {
+                return fail(value);
+            }
+            return accept(variables, gradient, step, trialValue);
+        }
+
+        private double strongWolfe(double[] variables, double value, double[] gradient, double slope,
+                double step) {
+            double previousStep = 0;
+            double previousValue = value;
+            double previousSlope = slope;
+            for (int i = 0; i < MAX_EVALUATIONS; i++) {
+                double trialValue = evaluate(variables, gradient, step);
+                double trialSlope = directionalDerivative(gradient);
+                if (trialValue > value + C1 * step * slope || (i > 0 && trialValue >= previousValue)) {
+                    return zoom(variables, value, gradient, slope, previousStep, previousValue, previousSlope, step,
+                            trialValue);
+                }
+                if (Math.abs(trialSlope) <= -C2 * slope) {
+                    return accept(variables, gradient, step, trialValue);
+                }
+                if (trialSlope >= 0) {
+                    return zoom(variables, value, gradient, slope, step, trialValue, trialSlope, previousStep,
+                            previousValue);
+                }
+                previousStep = step;
+                previousValue = trialValue;
+                previousSlope = trialSlope;
+                step *= 2;
+            }
+            return accept(variables, gradient, previousStep, evaluate(variables, gradient, previousStep));
+        }
+
+        private double zoom(double[] variables, double value, double[] gradient, double slope, double low,
+                double lowValue, double lowSlope, double high, double highValue) {
+            for (int i = 0; i < MAX_EVALUATIONS; i++) {
+                // minimizer of the quadratic through (low, lowValue, lowSlope) and (high, highValue),
+                // kept away from the ends of the interval, bisection otherwise
+                double width = high - low;
+                double denominator = 2 * (highValue - lowValue - lowSlope * width);
+                double step = denominator > 0 ? low - lowSlope * width * width / denominator : low + 0.5 * width;
+                double margin = 0.1 * Math.abs(width);
+                if (!(Math.min(low, high) + margin <= step && step <= Math.max(low, high) - margin)) {
+                    step = low + 0.5 * width;
+                }
+                double trialValue = evaluate(variables, gradient, step);
+                if (trialValue > value + C1 * step * slope || trialValue >= lowValue) {
+                    high = step;
+                    highValue = trialValue;
+                } else {
+                    double trialSlope = directionalDerivative(gradient);
+                    if (Math.abs(trialSlope) <= -C2 * slope) {
+                        return accept(variables, gradient, step, trialValue);
+                    }
+                    if (trialSlope * (high - low) >= 0) {
+                        high = low;
+                        highValue = lowValue;
+                    }
+                    low = step;
+                    lowValue = trialValue;
+                    lowSlope = trialSlope;
+                }
+            }
+            // no strong Wolfe point found, fall back to the best sufficient decrease step seen
+            if (low == 0) {
+                return fail(value);
+            }
+            return accept(variables, gradient, low, evaluate(variables, gradient, low));
+        }
+
+        private double evaluate(double[] variables, double[] gradient, double step) {
+            for (int i = 0; i < variables.length; i++) {
+                double trial = variables[i] + step * direction[i];
+                trialVariables[i] = compatible ? SteepestDescentOptimizer.floorTo5Decimals(trial) : trial;
+            }
+            evaluations++;
+            return objectiveFunction.computeValueAndGradient(trialVariables, trialGradient);
+        }
+
+        // derivative along the search direction at the last trial point
+        private double directionalDerivative(double[] gradient) {
+            double derivative = 0;
+            for (int i = 0; i < gradient.length; i++) {
+                derivative += trialGradient[i] * direction[i];
+            }
+            return derivative;
+        }
+
+        // the next search starts from the caller's step again instead of warm starting from this one
+        private double fail(double value) {
+            failed = true;
+            lastStep = 0;
+            return value;
+        }
+
+        private double accept(double[] variables, double[] gradient, double step, double trialValue) {
+            lastStep = step;
+            System.arraycopy(trialVariables, 0, variables, 0, variables.length);
+            System.arraycopy(trialGradient, 0, gradient, 0, gradient.length);
+            return trialValue;
+        }
+    }
+
+    public interface Solver {
+        String getName();
+
+        // runs until the tolerance or the iteration budget is reached, variables holds the final point
+        OptimizationResult solve(ObjectiveFunction objectiveFunction, double[] variables, int iterations,
+                double tolerance, double stepSize, int dimensionality, OptimizerOptions options,
+                IterationListener listener);
+    }
+
+    public enum SolverType {
+        STEEPEST_DESCENT,
+        HEAVY_BALL,
+        NESTEROV,
+        LBFGS,
+        STOCHASTIC;
+
+        static SolverType fromName(String name) {
+            switch (name.trim().toLowerCase()) {
+                case "steepest_descent":
+                    return STEEPEST_DESCENT;
+                case "heavy_ball":
+                case "momentum":
+                    return HEAVY_BALL;
+                case "nesterov":
+                    return NESTEROV;
+                case "lbfgs":
+                case "l-bfgs":
+                    return LBFGS;
+                case "sgd":
+                case "stochastic":
+                    return STOCHASTIC;
+                default:
+                    throw new IllegalArgumentException("Error: Unknown solver.");
+            }
+        }
+
+        // solvers keep per-run buffers, so every run gets its own instance
+        Solver create() {
+            switch (this) {
+                case HEAVY_BALL:
+                    return new HeavyBallSolver();
+                case NESTEROV:
+                    return new NesterovSolver();
+                case LBFGS:
+                    return new LbfgsSolver();
+                case STOCHASTIC:
+                    return new StochasticSolver();
+                default:
+                    return new SteepestDescentSolver();
+            }
+        }
+    }
+
+    // Shared iteration loop: evaluation, gradient rounding, stopping criteria and listener calls.
+    // Subclasses only decide how to move from the current point.
+    public abstract static class DescentSolver implements Solver {
+        static final int CHECKPOINT_MAGIC = 0x4F50434B; // "OPCK"
+
+        protected ObjectiveFunction objectiveFunction;
+        protected boolean compatible;
+        protected double stepSize;
+        protected LineSearch lineSearch;
+        // set by update() when it already evaluated the new point
+        protected double evaluatedValue;
+
+        // gradient buffer, kept between runs so a reused solver does not reallocate it
+        private double[] variables_gradient;
+
+        // prepares the per-run state, buffers from an earlier run of the same size should be reused
+        protected abstract void start(int dimensionality, OptimizerOptions options);
+
+        // moves variables away from the current point, returns true when gradient and evaluatedValue
+        // already hold the new point's evaluation
+        protected abstract boolean update(double[] variables, double value, double[] gradient);
+
+        protected StepPolicy effectiveStepPolicy(OptimizerOptions options) {
+            return options.stepPolicy;
+        }
+
+        protected double round(double value) {
+            return compatible ? SteepestDescentOptimizer.floorTo5Decimals(value) : value;
+        }
+
+        protected static double[] buffer(double[] current, int length) {
+            return current != null && current.length == length ? current : new double[length];
+        }
+
+        // state beyond the shared loop that a subclass needs to continue a run exactly, called after
+        // start() when resuming
+        protected void saveState(DataOutputStream out) throws IOException {
+        }
+
+        protected void restoreState(DataInputStream in) throws IOException {
+        }
+
+        protected static void writeDoubles(DataOutputStream out, double[] values, int length) throws IOException {
+            for (int i = 0; i < length; i++) {
+                out.writeDouble(values[i]);
+            }
+        }
+
+        protected static void readDoubles(DataInputStream in, double[] values, int length) throws IOException {
+            for (int i = 0; i < length; i++) {
+                values[i] = in.readDouble();
+            }
+        }
+
+        @Override
+        public OptimizationResult solve(ObjectiveFunction objectiveFunction, double[] variables, int iterations,
+                double tolerance, double stepSize, int dimensionality, OptimizerOptions options,
+                IterationListener listener) {
+            if (options.parallel && !(objectiveFunction instanceof ParallelObjectiveFunction)) {
+                objectiveFunction = new ParallelObjectiveFunction(objectiveFunction);
+            }
+            this.objectiveFunction = objectiveFunction;
+            this.compatible = options.getNumericMode() == NumericMode.COMPATIBLE;
+            this.stepSize = stepSize;
+            StepPolicy stepPolicy = effectiveStepPolicy(options);
+            if (stepPolicy == StepPolicy.FIXED) {
+                lineSearch = null;
+            } else if (lineSearch != null && lineSearch.canReuse(objectiveFunction, stepPolicy, compatible,
+                    dimensionality)) {
+                lineSearch.reset();
+            } else {
+                lineSearch = new LineSearch(objectiveFunction, stepPolicy, compatible, dimensionality);
+            }
+            start(dimensionality, options);
+            // checkpoints are tied to the run that wrote them through the configuration hash
+            Path checkpointPath = options.checkpointPath;
+            String configuration = checkpointPath == null ? null
+                    : ResultCache.key(objectiveFunction, dimensionality, iterations, tolerance, stepSize, variables,
+                            options);
+            int k = iterations;
+            long functionEvaluations = 0;
+            long gradientEvaluations = 0;
+            // floor variables for rounding to be accurate
+            if (compatible) {
+                for (int i = 0; i < variables.length; i++) {
+                    variables[i] = SteepestDescentOptimizer.floorTo5Decimals(variables[i]);
+                }
+            }
+            // gradient buffer is reused across iterations
+            variables_gradient = buffer(variables_gradient, dimensionality);
+            double current_tolerance = Double.MAX_VALUE;
+            double obj_func_value = 0;
+            boolean evaluated = false;
+            boolean stopped = false;
+            ConvergenceMonitor monitor = ConvergenceMonitor.create(options, dimensionality);
+            TerminationReason reason = null;
+            // only a checkpoint this run resumed from or wrote itself is deleted at the end
+            boolean ownsCheckpoint = false;
+            if (configuration != null && !options.resume && Files.exists(checkpointPath)
+                    && !isCheckpoint(checkpointPath)) {
+                throw new IllegalArgumentException("Error: " + checkpointPath + " exists and is not a checkpoint.");
+            }
+            if (configuration != null && options.resume && Files.exists(checkpointPath)) {
+                ownsCheckpoint = true;
+                try (DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(Files.newInputStream(checkpointPath), 1 << 16))) {
+                    if (in.readInt() != CHECKPOINT_MAGIC || !in.readUTF().equals(configuration)) {
+                        throw new IllegalArgumentException("Error: Checkpoint " + checkpointPath
+                                + " was written by a different run.");
+                    }
+                    k = in.readInt();
+                    current_tolerance = in.readDouble();
+                    obj_func_value = in.readDouble();
+                    evaluated = in.readBoolean();
+                    functionEvaluations = in.readLong();
+                    gradientEvaluations = in.readLong();
+                    double lastStep = in.readDouble();
+                    long lineSearchEvaluations = in.readLong();
+                    if (lineSearch != null) {
+                        lineSearch.lastStep = lastStep;
+                        lineSearch.evaluations = lineSearchEvaluations;
+                    }
+                    readDoubles(in, variables, dimensionality);
+                    readDoubles(in, variables_gradient, dimensionality);
+                    restoreState(in);
+                    if (monitor != null) {
+                        monitor.restore(in);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Error: Could not read checkpoint " + checkpointPath + ".", e);
+                }
+            }
+            int lastCheckpoint = iterations - k;
+            RunMetrics metrics = options.metrics ? new RunMetrics() : null;
+            long runStart = 0;
+            long lapStart = 0;
+            if (metrics != null) {
+                metrics.allocatedBytes = RunMetrics.threadAllocatedBytes();
+                runStart = System.nanoTime();
+            }
+            RunEvent runEvent = null;
+            // while loop implements stopping conditions
+            while (current_tolerance > tolerance && k > 0) {
+                // checked every iteration, so a recording started during the run still gets its events
+                if (runEvent == null && FlightRecorder.isInitialized()) {
+                    runEvent = new RunEvent();
+                    runEvent.begin();
+                }
+                IterationEvent iterationEvent = runEvent != null ? new IterationEvent() : null;
+                if (iterationEvent != null) {
+                    iterationEvent.begin();
+                }
+                if (metrics != null) {
+                    lapStart = System.nanoTime();
+                }
+                if (configuration != null && iterations - k - lastCheckpoint >= options.checkpointInterval) {
+                    lastCheckpoint = iterations - k;
+                    saveCheckpoint(checkpointPath, configuration, k, current_tolerance, obj_func_value, evaluated,
+                            variables, functionEvaluations, gradientEvaluations, monitor);
+                    ownsCheckpoint = true;
+                    if (metrics != null) {
+                        lapStart = metrics.lap(RunMetrics.CHECKPOINT, lapStart);
+                    }
+                }
+                if (!evaluated) {
+                    obj_func_value = objectiveFunction.computeValueAndGradient(variables, variables_gradient);
+                    functionEvaluations++;
+                    gradientEvaluations++;
+                    if (metrics != null) {
+                        lapStart = metrics.lap(RunMetrics.EVALUATION, lapStart);
+                    }
+                }
+                // abort before the value reaches listeners, rounding would throw on it
+                if (!Double.isFinite(obj_func_value) || obj_func_value > options.maxValue) {
+                    evaluated = true;
+                    reason = TerminationReason.DIVERGED;
+                    break;
+                }
+                if (compatible) {
+                    for (int i = 0; i < variables_gradient.length; i++) {
+                        variables_gradient[i] = SteepestDescentOptimizer.floorTo5DecimalsXValues(
+                                variables_gradient[i]);
+                    }
+                    if (metrics != null) {
+                        lapStart = metrics.lap(RunMetrics.ROUNDING, lapStart);
+                    }
+                }
+                listener.onIteration(iterations - k + 1, obj_func_value, variables,
+                        iterations - k > 0 ? current_tolerance : Double.NaN);
+                if (listener.isStopRequested()) {
+                    // obj_func_value still belongs to variables
+                    evaluated = true;
+                    stopped = true;
+                    break;
+                }
+                if (metrics != null) {
+                    lapStart = metrics.lap(RunMetrics.LISTENER, lapStart);
+                }
+                current_tolerance = objectiveFunction.computeGradientMagnitude(variables_gradient);
+                if (!Double.isFinite(current_tolerance)) {
+                    evaluated = true;
+                    reason = TerminationReason.DIVERGED;
+                    break;
+                }
+                if (monitor != null && current_tolerance > tolerance) {
+                    reason = monitor.check(obj_func_value, variables);
+                    if (reason != null) {
+                        evaluated = true;
+                        break;
+                    }
+                }
+                if (metrics != null) {
+                    lapStart = metrics.lap(RunMetrics.TOLERANCE, lapStart);
+                }
+                evaluated = update(variables, obj_func_value, variables_gradient);
+                if (evaluated) {
+                    obj_func_value = evaluatedValue;
+                }
+                if (lineSearch != null && lineSearch.failed) {
+                    // variables did not move, every further iteration would repeat the same search
+                    reason = TerminationReason.LINE_SEARCH_FAILED;
+                    break;
+                }
+                if (metrics != null) {
+                    metrics.lap(RunMetrics.UPDATE, lapStart);
+                }
+                if (iterationEvent != null && iterationEvent.shouldCommit()) {
+                    iterationEvent.iteration = iterations - k + 1;
+                    iterationEvent.objectiveValue = obj_func_value;
+                    iterationEvent.tolerance = current_tolerance;
+                    iterationEvent.commit();
+                }
+                k--;
+            }
+            if (!evaluated) {
+                if (metrics != null) {
+                    lapStart = System.nanoTime();
+                }
+                obj_func_value = objectiveFunction.compute(variables);
+                functionEvaluations++;
+                if (metrics != null) {
+                    metrics.lap(RunMetrics.EVALUATION, lapStart);
+                }
+            }
+            if (lineSearch != null) {
+                functionEvaluations += lineSearch.evaluations;
+                gradientEvaluations += lineSearch.evaluations;
+            }
+            // output last iteration of optimization process
+            if (reason == null && current_tolerance < tolerance) {
+                listener.onConverged(iterations - k + 1, obj_func_value, variables,
+                        iterations - k > 0 ? current_tolerance : Double.NaN);
+            }
+            if (reason == null) {
+                reason = stopped ? TerminationReason.STOPPED
+                        : k != 0 ? TerminationReason.CONVERGED : TerminationReason.MAX_ITERATIONS;
+            }
+            // a finished run has nothing left to resume
+            if (ownsCheckpoint && !stopped) {
+                try {
+                    Files.deleteIfExists(checkpointPath);
+                } catch (IOException e) {
+                    // a stale checkpoint is rejected or finishes immediately on resume
+                }
+            }
+            if (metrics != null) {
+                metrics.totalNanos = System.nanoTime() - runStart;
+                long allocatedAfter = RunMetrics.threadAllocatedBytes();
+                metrics.allocatedBytes = metrics.allocatedBytes < 0 ? -1 : allocatedAfter - metrics.allocatedBytes;
+                metrics.solver = getName();
+                metrics.iterations = iterations - k;
+                metrics.functionEvaluations = functionEvaluations;
+                metrics.gradientEvaluations = gradientEvaluations;
+                OptimizerMetrics.record(metrics);
+            }
+            OptimizationResult result = new OptimizationResult(variables.clone(), obj_func_value, iterations - k,
+                    reason, stepPolicy, functionEvaluations, gradientEvaluations, metrics);
+            if (runEvent == null && FlightRecorder.isInitialized()) {
+                runEvent = new RunEvent();
+            }
+            if (runEvent != null && runEvent.shouldCommit()) {
+                runEvent.objectiveFunction = objectiveFunction.getName();
+                runEvent.solver = getName();
+                runEvent.dimensionality = dimensionality;
+                runEvent.iterations = iterations - k;
+                runEvent.objectiveValue = obj_func_value;
+                runEvent.converged = result.isConverged();
+                runEvent.commit();
+            }
+            listener.onComplete(result);
+            return result;
+        }
+
+        // true when path starts with the checkpoint magic, so runs never overwrite unrelated files
+        private static boolean isCheckpoint(Path path) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+                return in.readInt() == CHECKPOINT_MAGIC;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        // Snapshot taken at the top of the loop, before the next evaluation. The gradient is stored
+        // as well because solvers with a line search enter the loop with it already evaluated.
+        private void saveCheckpoint(Path path, String configuration, int k, double currentTolerance, double value,
+                boolean evaluated, double[] variables, long functionEvaluations, long gradientEvaluations,
+                ConvergenceMonitor monitor) {
+            try {
+                AtomicFiles.write(path, out -> {
+                    out.writeInt(CHECKPOINT_MAGIC);
+                    out.writeUTF(configuration);
+                    out.writeInt(k);
+                    out.writeDouble(currentTolerance);
+                    out.writeDouble(value);
+                    out.writeBoolean(evaluated);
+                    out.writeLong(functionEvaluations);
+                    out.writeLong(gradientEvaluations);
+                    out.writeDouble(lineSearch == null ? 0 : lineSearch.lastStep);
+                    out.writeLong(lineSearch == null ? 0 : lineSearch.evaluations);
+                    writeDoubles(out, variables, variables.length);
+                    writeDoubles(out, variables_gradient, variables.length);
+                    saveState(out);
+                    if (monitor != null) {
+                        monitor.save(out);
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error: Could not write checkpoint " + path + ".", e);
+            }
+        }
+    }
+
+    public static class SteepestDescentSolver extends DescentSolver {
+        private double[] direction;
+
+        @Override
+        public String getName() {
+            return "Steepest Descent";
+        }
+
+        @Override
+        protected void start(int dimensionality, OptimizerOptions options) {
+            direction = lineSearch == null ? null : buffer(direction, dimensionality);
+        }
+
+        @Override
+        protected boolean update(double[] variables, double value, double[] gradient) {
+            if (lineSearch != null) {
+                for (int i = 0; i < gradient.length; i++) {
+                    direction[i] = -gradient[i];
+                }
+                evaluatedValue = lineSearch.search(variables, value, gradient, direction,
+                        lineSearch.initialStep(stepSize));
+                return true;
+            }
+            if (compatible) {
+                for (int i = 0; i < variables.length; i++) {
+                    // Update rule
+                    variables[i] = SteepestDescentOptimizer.floorTo5Decimals(variables[i] - (stepSize * gradient[i]));
+                }
+            } else {
+                for (int i = 0; i < variables.length; i++) {
+                    variables[i] = variables[i] - (stepSize * gradient[i]);
+                }
+            }
+            return false;
+        }
+    }
+
+    // Polyak heavy-ball momentum: v = momentum * v - stepSize * g, x = x + v. Uses the fixed step.
+    public static class HeavyBallSolver extends DescentSolver {
+        protected double momentum;
+        protected double[] velocity;
+
+        @Override
+        public String getName() {
+            return "Heavy Ball";
+        }
+
+        @Override
+        protected StepPolicy effectiveStepPolicy(OptimizerOptions options) {
+            return StepPolicy.FIXED;
+        }
+
+        @Override
+        protected void start(int dimensionality, OptimizerOptions options) {
+            momentum = options.momentum;
+            velocity = buffer(velocity, dimensionality);
+            Arrays.fill(velocity, 0);
+        }
+
+        @Override
+        protected boolean update(double[] variables, double value, double[] gradient) {
+            for (int i = 0; i < variables.length; i++) {
+                velocity[i] = momentum * velocity[i] - stepSize * gradient[i];
+                variables[i] = round(variables[i] + velocity[i]);
+            }
+            return false;
+        }
+
+        @Override
+        protected void saveState(DataOutputStream out) throws IOException {
+            writeDoubles(out, velocity, velocity.length);
+        }
+
+        @Override
+        protected void restoreState(DataInputStream in) throws IOException {
+            readDoubles(in, velocity, velocity.length);
+        }
+    }
+
+    // Nesterov accelerated gradient written in look-ahead form, so the gradient is still taken at
+    // the stored iterate: v = momentum * v - stepSize * g, x = x + momentum * v - stepSize * g.
+    public static class NesterovSolver extends HeavyBallSolver {
+        @Override
+        public String getName() {
+            return "Nesterov";
+        }
+
+        @Override
+        protected boolean update(double[] variables, double value, double[] gradient) {
+            for (int i = 0; i < variables.length; i++) {
+                velocity[i] = momentum * velocity[i] - stepSize * gradient[i];
+                variables[i] = round(variables[i] + momentum * velocity[i] - stepSize * gradient[i]);
+            }
+            return false;
+        }
+    }
+
+    // Limited-memory BFGS. The last historySize (s, y) pairs live in flat ring buffers allocated once
+    // per run, and each direction comes from the two-loop recursion. Always uses a line search,
+    // strong Wolfe unless Armijo is configured.
+    public static class LbfgsSolver extends DescentSolver {
+        private int historySize;
+        private double[] sHistory;
+        private double[] yHistory;
+        private double[] rho;
+        private double[] alpha;
+        private int newest;
+        private int count;
+        private double[] previousVariables;
+        private double[] previousGradient;
+        private double[] direction;
+        private boolean hasPrevious;
+
+        @Override
+        public String getName() {
+            return "L-BFGS";
+        }
+
+        @Override
+        protected StepPolicy effectiveStepPolicy(OptimizerOptions options) {
+            return options.stepPolicy == StepPolicy.FIXED ? StepPolicy.STRONG_WOLFE : options.stepPolicy;
+        }
+
+        @Override
+        protected void start(int dimensionality, OptimizerOptions options) {
+            historySize = options.historySize;
+            // the history is only read back up to count, so stale entries need no clearing
+            sHistory = buffer(sHistory, historySize * dimensionality);
+            yHistory = buffer(yHistory, historySize * dimensionality);
+            rho = buffer(rho, historySize);
+            alpha = buffer(alpha, historySize);
+            newest = -1;
+            count = 0;
+            previousVariables = buffer(previousVariables, dimensionality);
+            previousGradient = buffer(previousGradient, dimensionality);
+            direction = buffer(direction, dimensionality);
+            hasPrevious = false;
+        }
+
+        @Override
+        protected boolean update(double[] variables, double value, double[] gradient) {
+            int n = variables.length;
+            if (hasPrevious) {
+                storePair(variables, gradient, n);
+            }
+            computeDirection(gradient, n);
+            double slope = 0;
+            for (int i = 0; i < n; i++) {
+                slope += gradient[i] * direction[i];
+            }
+            if (!(slope < 0)) {
+                // lost the descent property, restart from steepest descent
+                count = 0;
+                for (int i = 0; i < n; i++) {
+                    direction[i] = -gradient[i];
+                }
+            }
+            System.arraycopy(variables, 0, previousVariables, 0, n);
+            System.arraycopy(gradient, 0, previousGradient, 0, n);
+            hasPrevious = true;
+            // without curvature information the direction is the raw gradient, so start from the step size
+            double step = count == 0 ? stepSize : 1.0;
+            evaluatedValue = lineSearch.search(variables, value, gradient, direction, step);
+            if (lineSearch.failed && count > 0) {
+                // stale curvature pairs can produce a useless direction, drop them and retry once along the
+                // gradient. A second failure is left to the shared loop, which ends the run.
+                count = 0;
+                for (int i = 0; i < n; i++) {
+                    direction[i] = -gradient[i];
+                }
+                evaluatedValue = lineSearch.search(variables, value, gradient, direction, stepSize);
+            }
+            return true;
+        }
+
+        private void storePair(double[] variables, double[] gradient, int n) {
+            double sy = 0;
+            for (int i = 0; i < n; i++) {
+                sy += (variables[i] - previousVariables[i]) * (gradient[i] - previousGradient[i]);
+            }
+            // skip pairs without positive curvature, they would break the positive definite update.
+            // The check comes first because with a full history the next slot still holds the oldest
+            // pair in use.
+            if (!(sy > 1e-12)) {
+                return;
+            }
+            int slot = (newest + 1) % historySize;
+            int offset = slot * n;
+            for (int i = 0; i < n; i++) {
+                sHistory[offset + i] = variables[i] - previousVariables[i];
+                yHistory[offset + i] = gradient[i] - previousGradient[i];
+            }
+            rho[slot] = 1.0 / sy;
+            newest = slot;
+            count = Math.min(count + 1, historySize);
+        }
+
+        // two-loop recursion, direction = -H * gradient
+        private void computeDirection(double[] gradient, int n) {
+            System.arraycopy(gradient, 0, direction, 0, n);
+            for (int j = 0; j < count; j++) {
+                int offset = slot(j) * n;
+                double sq = 0;
+                for (int i = 0; i < n; i++) {
+                    sq += sHistory[offset + i] * direction[i];
+                }
+                alpha[slot(j)] = rho[slot(j)] * sq;
+                for (int i = 0; i < n; i++) {
+                    direction[i] -= alpha[slot(j)] * yHistory[offset + i];
+                }
+            }
+            if (count > 0) {
+                // initial Hessian scaling gamma = s.y / y.y from the newest pair
+                int offset = newest * n;
+                double yy = 0;
+                for (int i = 0; i < n; i++) {
+                    yy += yHistory[offset + i] * yHistory[offset + i];
+                }
+                double gamma = 1.0 / (rho[newest] * yy);
+                for (int i = 0; i < n; i++) {
+                    direction[i] *= gamma;
+                }
+            }
+            for (int j = count - 1; j >= 0; j--) {
+                int offset = slot(j) * n;
+                double yr = 0;
+                for (int i = 0; i < n; i++) {
+                    yr += yHistory[offset + i] * direction[i];
+                }
+                double beta = rho[slot(j)] * yr;
+                for (int i = 0; i < n; i++) {
+                    direction[i] += sHistory[offset + i] * (alpha[slot(j)] - beta);
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                direction[i] = -direction[i];
+            }
+        }
+
+        // ring buffer slot of the j-th newest pair
+        private int slot(int j) {
+            return (newest - j + historySize) % historySize;
+        }
+
+        // alpha and direction are scratch space rewritten by every update
+        @Override
+        protected void saveState(DataOutputStream out) throws IOException {
+            out.writeInt(newest);
+            out.writeInt(count);
+            out.writeBoolean(hasPrevious);
+            writeDoubles(out, rho, historySize);
+            writeDoubles(out, sHistory, sHistory.length);
+            writeDoubles(out, yHistory, yHistory.length);
+            writeDoubles(out, previousVariables, previousVariables.length);
+            writeDoubles(out, previousGradient, previousGradient.length);
+        }
+
+        @Override
+        protected void restoreState(DataInputStream in) throws IOException {
+            newest = in.readInt();
+            count = in.readInt();
+            hasPrevious = in.readBoolean();
+            readDoubles(in, rho, historySize);
+            readDoubles(in, sHistory, sHistory.length);
+            readDoubles(in, yHistory, yHistory.length);
+            readDoubles(in, previousVariables, previousVariables.length);
+            readDoubles(in, previousGradient, previousGradient.length);
+        }
+    }
+
+    public static class SteepestDescentOptimizer {
+        private static final double SCALE = 100000.0;
+        // beyond this magnitude value * SCALE is no longer an exact integer candidate
+        private static final double FAST_FLOOR_LIMIT = 1e10;
+
+        public static OptimizationResult optimizeSteepestDescent(ObjectiveFunction objectiveFunction,
+                double[] variables, int iterations, double tolerance, double stepSize, int dimensionality,
+                ArrayList<String> outputArray) {
+            return optimizeSteepestDescent(objectiveFunction, variables, iterations, tolerance, stepSize,
+                    dimensionality, new OptimizerOptions(), outputArray);
+        }
+
+        public static OptimizationResult optimizeSteepestDescent(ObjectiveFunction objectiveFunction,
+                double[] variables, int iterations, double tolerance, double stepSize, int dimensionality,
+                OptimizerOptions options, ArrayList<String> outputArray) {
+            return optimizeSteepestDescent(objectiveFunction, variables, iterations, tolerance, stepSize,
+                    dimensionality, options, new TextTraceWriter(outputArray::add));
+        }
+
+        public static OptimizationResult optimizeSteepestDescent(ObjectiveFunction objectiveFunction,
+                double[] variables, int iterations, double tolerance, double stepSize, int dimensionality,
+                OptimizerOptions options, IterationListener listener) {
+            return new SteepestDescentSolver().solve(objectiveFunction, variables, iterations, tolerance, stepSize,
+                    dimensionality, options, listener);
+        }
+
+        // runs the solver selected in options
+        public static OptimizationResult optimize(ObjectiveFunction objectiveFunction, double[] variables,
+                int iterations, double tolerance, double stepSize, int dimensionality, OptimizerOptions options,
+                IterationListener listener) {
+            return options.solverType.create().solve(objectiveFunction, variables, iterations, tolerance, stepSize,
+                    dimensionality, options, listener);
+        }
+
+        private static int getValidatedInput(Scanner scanner, String prompt) {
+            // get validated binary prompts
+            int value = Integer.MAX_VALUE;
+            try {
+                prompt = scanner.next();
+                value = Integer.valueOf(prompt);
+                if (!(value == 0 || value == 1)) {
+                    System.out.println("Please enter a valid input (0 or 1).");
+                }
+            } catch (NumberFormatException e) {
+                System.out.println("Please enter a valid input (0 or 1).");
+            }
+            return value;
+        }
+
+        private static boolean getValidatedInput(String objectiveFunctionName, ArrayList<String> errorArray) {
+            // get validated objective function name
+            boolean isValid = true;
+            if (!ObjectiveRegistry.isKnown(objectiveFunctionName)) {
+                errorArray.add("Error: Unknown objective function.");
+                isValid = false;
+            }
+            return isValid;
+        }
+
+        static void getValidatedInput(ObjectiveFunction objFunc, int dimensionality, double[] startingPoint,
+                ArrayList<String> errorArray) {
+            // Validate dimensionality
+            if (startingPoint.length != dimensionality) {
+                errorArray.add("Error: Initial point dimensionality mismatch.");
+            } else if (objFunc.getDimensionality() > 0 && objFunc.getDimensionality() != dimensionality) {
+                errorArray.add("Error: " + objFunc.getName() + " has dimensionality " + objFunc.getDimensionality()
+                        + ".");
+            }
+            // validate in bounds
+            boolean[] inBounds = checkBounds(startingPoint, objFunc.getBounds());
+            for (int i = 0; i < inBounds.length; i++) {
+                if (!inBounds[i] && errorArray.isEmpty()) {
+                    errorArray.add("Error: Initial point " + startingPoint[i] + " is outside the bounds [-5.0, 5.0]");
+                }
+            }
+        }
+
+        private static void getFileInput(Scanner scanner, int txt_or_console_output, ArrayList<String> outputArray,
+                ArrayList<String> errorArray) throws Exception {
+            System.out.println("Please provide the path to the config file:");
+            File file = new File(scanner.next());
+            RunConfig config;
+            try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+                config = RunConfig.read(br);
+            } catch (FileNotFoundException e) {
+                System.out.println("Error reading the file.");
+                return;
+            }
+            errorArray.addAll(config.settingErrors);
+            // Check if objective function name is valid
+            if (getValidatedInput(config.objectiveFunctionName, errorArray)) {
+                ObjectiveFunction objFunc = createObjectiveFunction(config.objectiveFunctionName, errorArray);
+                if (objFunc != null) {
+                    getValidatedInput(objFunc, config.dimensionality, config.startingPoint, errorArray);
+                }
+                if (!(errorArray.isEmpty())) {
+                    outputArray(scanner, 1, errorArray);
+                } else {
+                    getValidatedOutput(scanner, objFunc, config.startingPoint, config.iterations, config.tolerance,
+                            config.stepSize, config.dimensionality, config.options, txt_or_console_output,
+                            outputArray, errorArray);
+                }
+            } else {
+                // Terminate program before taking input for startingPoint if error in objective
+                // function name
+                outputArray(scanner, 1, errorArray);
+            }
+        }
+
+        private static void getManualInput(Scanner scanner, int txt_or_console_output, ArrayList<String> outputArray,
+                ArrayList<String> errorArray) {
+            System.out.println("Enter the choice of objective function (quadratic or rosenbrock):");
+            String objectiveFunctionName = scanner.next();
+            System.out.println("Enter the dimensionality of the problem:");
+            int dimensionality = scanner.nextInt();
+            System.out.println("Enter the number of iterations:");
+            int iterations = scanner.nextInt();
+            System.out.println("Enter the tolerance:");
+            double tolerance = scanner.nextDouble();
+            System.out.println("Enter the step size:");
+            double stepSize = scanner.nextDouble();
+            // validate objective function name
+            if (getValidatedInput(objectiveFunctionName, errorArray)) {
+                System.out.println("Enter the initial point as " + dimensionality + " space-separated values:");
+                scanner.nextLine(); // ghost line
+                double[] startingPointArray = RunConfig.parsePoint(scanner.nextLine());
+                ObjectiveFunction objFunc = createObjectiveFunction(objectiveFunctionName, errorArray);
+                if (objFunc == null) {
+                    outputArray(scanner, txt_or_console_output, errorArray);
+                    return;
+                }
+                getValidatedOutput(scanner, objFunc, startingPointArray, iterations, tolerance, stepSize,
+                        dimensionality, new OptimizerOptions(), txt_or_console_output, outputArray, errorArray);
+            } else {
+                // Terminate program before taking input for startingPoint if error in objective
+                // function name
+                outputArray(scanner, txt_or_console_output, errorArray);
+            }
+        }
+
+        private static void outputArray(Scanner scanner, int txt_or_console_output, ArrayList<String> arrayList) {
+            // output to text file
+            if (txt_or_console_output == 0) {
+                System.out.println("Please provide the path for the output file:");
+                File file = new File(scanner.next());
+                try (BufferedWriter bw = new BufferedWriter(new FileWriter(file))) {
+                    file.createNewFile();
+                    for (String s : arrayList) {
+                        bw.write(s);
+                        bw.newLine();
+                    }
+                    bw.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            } else {
+                // output to console
+                for (String s : arrayList) {
+                    System.out.println(s);
+                }
+            }
+        }
+
+        private static void getValidatedOutput(Scanner scanner, ObjectiveFunction objFunc, double[] variables,
+                int iterations, double tolerance, double stepSize, int dimensionality, OptimizerOptions options,
+                int txt_or_console_output,
+                ArrayList<String> outputArray, ArrayList<String> errorArray) {
+            getValidatedInput(objFunc, dimensionality, variables, errorArray);
+            // only output calculations if there are no errors, otherwise output it
+            if (!(errorArray.isEmpty())) {
+                outputArray(scanner, txt_or_console_output, errorArray);
+            } else {
+                // header is small, the iterations are streamed so memory does not grow with the run
+                addHeader(objFunc, variables, iterations, tolerance, stepSize, dimensionality, options, outputArray);
+                if (txt_or_console_output == 0) {
+                    System.out.println("Please provide the path for the output file:");
+                    String path = scanner.next();
+                    if (path.endsWith(".bin")) {
+                        // binary trajectory output, see BinaryTrajectoryWriter for the layout
+                        try (BinaryTrajectoryWriter writer = BinaryTrajectoryWriter.open(Paths.get(path),
+                                objFunc.getName(), dimensionality, iterations, tolerance, stepSize,
+                                options.getNumericMode())) {
+                            optimize(objFunc, variables, iterations, tolerance, stepSize, dimensionality, options,
+                                    writer);
+                        } catch (IOException | UncheckedIOException e) {
+                            e.printStackTrace();
+                        }
+                        return;
+                    }
+                    try (ChannelTraceWriter writer = ChannelTraceWriter.open(Paths.get(path), options.sampleEvery,
+                            path.endsWith(".gz"))) {
+                        for (String s : outputArray) {
+                            writer.writeLine(s);
+                        }
+                        optimize(objFunc, variables, iterations, tolerance, stepSize, dimensionality, options,
+                                writer);
+                    } catch (IOException | UncheckedIOException e) {
+                        e.printStackTrace();
+                    }
+                } else {
+                    for (String s : outputArray) {
+                        System.out.println(s);
+                    }
+                    optimize(objFunc, variables, iterations, tolerance, stepSize, dimensionality, options,
+                            new TextTraceWriter(System.out::println, options.sampleEvery));
+                }
+            }
+        }
+
+        static void addHeader(ObjectiveFunction objFunc, double[] variables, int iterations, double tolerance,
+                double stepSize, int dimensionality, OptimizerOptions options, ArrayList<String> outputArray) {
+            DecimalFormat df = new DecimalFormat("0.00000");
+            outputArray.add("Objective Function: " + objFunc.getName());
+            outputArray.add("Dimensionality: " + dimensionality);
+            outputArray.add("Initial Point: " + arrayToStringNoFloor(variables));
+            outputArray.add("Iterations: " + iterations);
+            outputArray.add("Tolerance: " + df.format(tolerance));
+            outputArray.add("Step Size: " + df.format(stepSize));
+            // the default solver keeps the original header
+            if (options.solverType != SolverType.STEEPEST_DESCENT) {
+                outputArray.add("Solver: " + options.solverType.create().getName());
+            }
+            outputArray.add("");
+            outputArray.add("Optimization process:");
+        }
+
+        static ObjectiveFunction createObjectiveFunction(String objectiveFunctionName) {
+            // returns null for unknown names, callers report the error
+            return ObjectiveRegistry.create(objectiveFunctionName);
+        }
+
+        // reports unknown names and objectives that fail to load in errorArray and returns null for them
+        static ObjectiveFunction createObjectiveFunction(String objectiveFunctionName, ArrayList<String> errorArray) {
+            try {
+                ObjectiveFunction objFunc = ObjectiveRegistry.create(objectiveFunctionName);
+                if (objFunc == null) {
+                    errorArray.add("Error: Unknown objective function.");
+                }
+                return objFunc;
+            } catch (IllegalArgumentException e) {
+                errorArray.add(e.getMessage());
+                return null;
+            }
+        }
+
+        private static boolean[] checkBounds(double[] variables, double[] bounds) {
+            boolean[] inBounds = new boolean[variables.length];
+            for (int i = 0; i < variables.length; i++) {
+                if (variables[i] < bounds[0] || variables[i] > bounds[1]) {
+                    inBounds[i] = false;
+                } else {
+                    inBounds[i] = true;
+                }
+            }
+            return inBounds;
+        }
+
+        private static String arrayToStringNoFloor(double[] variables) {
+            StringBuilder variablesString = new StringBuilder(variables.length * 8);
+            for (double variable : variables) {
+                variablesString.append(variable).append(' ');
+            }
+            return variablesString.toString();
+        }
+
+        static String arrayToString(double[] variables) {
+            DecimalFormat df = new DecimalFormat("0.00000");
+            StringBuilder variablesString = new StringBuilder(variables.length * 9);
+            for (double variable : variables) {
+                variablesString.append(df.format(floorTo5DecimalsXValues(variable))).append(' ');
+            }
+            return variablesString.toString();
+        }
+
+        static double floorTo5Decimals(double value) {
+            // same result as new BigDecimal(value).setScale(5, RoundingMode.FLOOR).doubleValue(),
+            // CompatibilityTest compares the two
+            if (!(Math.abs(value) < FAST_FLOOR_LIMIT)) {
+                // also keeps the BigDecimal exception for NaN and Infinity
+                return floorTo5DecimalsExact(value);
+            }
+            double floored = Math.floor(value * SCALE);
+            // value * SCALE can round up onto an integer, the fma residual is exact in sign
+            if (Math.fma(value, SCALE, -floored) < 0) {
+                floored -= 1;
+            }
+            // floored / SCALE is correctly rounded like BigDecimal.doubleValue, + 0.0 clears -0.0
+            return floored / SCALE + 0.0;
+        }
+
+        static double floorTo5DecimalsExact(double value) {
+            BigDecimal bd = new BigDecimal(value).setScale(5, RoundingMode.FLOOR);
+            return bd.doubleValue();
+        }
+
+        static double floorTo5DecimalsXValues(double value) {
+            return Math.round(value * SCALE) / SCALE;
+        }
+    }
+
+    public enum Sampling {
+        UNIFORM,
+        LATIN_HYPERCUBE,
+        SOBOL;
+
+        static Sampling fromName(String name) {
+            switch (name.trim().toLowerCase()) {
+                case "uniform":
+                    return UNIFORM;
+                case "lhs":
+                case "latin_hypercube":
+                    return LATIN_HYPERCUBE;
+                case "sobol":
+                    return SOBOL;
+                default:
+                    throw new IllegalArgumentException("Error: Unknown sampling method.");
+            }
+        }
+    }
+
+    // Produces start j of K straight from its index, so no K x n table of points is ever stored.
+    // Latin hypercube keeps a K x n table of stratum numbers, one Fisher-Yates permutation of the K
+    // strata per dimension, and jitters each start inside its stratum.
+    static final class StartSampler {
+        // Joe and Kuo direction number parameters (new-joe-kuo-6.21201) for dimensions 2 to 16:
+        // degree s, coefficient a, then the initial direction numbers m_1 .. m_s
+        private static final int[][] SOBOL_PARAMETERS = {
+                { 1, 0, 1 },
+                { 2, 1, 1, 3 },
+                { 3, 1, 1, 3, 1 },
+                { 3, 2, 1, 1, 1 },
+                { 4, 1, 1, 1, 3, 3 },
+                { 4, 4, 1, 3, 5, 13 },
+                { 5, 2, 1, 1, 5, 5, 17 },
+                { 5, 4, 1, 1, 5, 5, 5 },
+                { 5, 7, 1, 1, 7, 11, 19 },
+                { 5, 11, 1, 1, 5, 1, 1 },
+                { 5, 13, 1, 1, 1, 3, 11 },
+                { 5, 14, 1, 3, 5, 5, 31 },
+                { 6, 1, 1, 3, 3, 9, 7, 49 },
+                { 6, 13, 1, 1, 1, 15, 21, 21 },
+                { 6, 16, 1, 3, 1, 13, 27, 49 } };
+        static final int MAX_SOBOL_DIMENSIONS = SOBOL_PARAMETERS.length + 1;
+
+        private final Sampling sampling;
+        private final int starts;
+        private final long seed;
+        private final double lower;
+        private final double width;
+        // stratum of start s in dimension d at [s * dimensionality + d], so a start reads one run
+        private int[] lhsStrata;
+        private int[][] sobolDirections;
+
+        StartSampler(Sampling sampling, int starts, int dimensionality, double[] bounds, long seed) {
+            if (Double.isInfinite(bounds[0]) || Double.isInfinite(bounds[1])) {
+                throw new IllegalArgumentException("Error: Multi-start sampling needs finite bounds.");
+            }
+            this.sampling = sampling;
+            this.starts = starts;
+            this.seed = seed;
+            this.lower = bounds[0];
+            this.width = bounds[1] - bounds[0];
+            if (sampling == Sampling.LATIN_HYPERCUBE) {
+                if ((long) starts * dimensionality > Integer.MAX_VALUE - 8) {
+                    throw new IllegalArgumentException(
+                            "Error: Latin hypercube sampling supports at most " + (Integer.MAX_VALUE - 8)
+                                    + " starts times dimensions.");
+                }
+                SplittableRandom random = new SplittableRandom(seed);
+                lhsStrata = new int[starts * dimensionality];
+                int[] permutation = new int[starts];
+                for (int d = 0; d < dimensionality; d++) {
+                    for (int s = 0; s < starts; s++) {
+                        permutation[s] = s;
+                    }
+                    for (int s = starts - 1; s > 0; s--) {
+                        int other = random.nextInt(s + 1);
+                        int stratum = permutation[s];
+                        permutation[s] = permutation[other];
+                        permutation[other] = stratum;
+                    }
+                    for (int s = 0; s < starts; s++) {
+                        lhsStrata[s * dimensionality + d] = permutation[s];
+                    }
+                }
+            } else if (sampling == Sampling.SOBOL) {
+                if (dimensionality > MAX_SOBOL_DIMENSIONS) {
+                    throw new IllegalArgumentException(
+                            "Error: Sobol sampling supports up to " + MAX_SOBOL_DIMENSIONS + " dimensions.");
+                }
+                sobolDirections = new int[dimensionality][32];
+                for (int bit = 0; bit < 32; bit++) {
+                    sobolDirections[0][bit] = 1 << (31 - bit);
+                }
+                for (int d = 1; d < dimensionality; d++) {
+                    int[] parameters = SOBOL_PARAMETERS[d - 1];
+                    int degree = parameters[0];
+                    int coefficients = parameters[1];
+                    int[] v = sobolDirections[d];
+                    for (int bit = 0; bit < 32; bit++) {
+                        if (bit < degree) {
+                            v[bit] = parameters[2 + bit] << (31 - bit);
+                        } else {
+                            v[bit] = v[bit - degree] ^ (v[bit - degree] >>> degree);
+                            for (int k = 1; k < degree; k++) {
+                                if (((coefficients >>> (degree - 1 - k)) & 1) != 0) {
+                                    v[bit] ^= v[bit - k];
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        static long gcd(long a, long b) {
+            while (b != 0) {
+                long t = a % b;
+                a = b;
+                b = t;
+            }
+            return a;
+        }
+
+        void sample(int index, double[] point) {
+            switch (sampling) {
+                case LATIN_HYPERCUBE: {
+                    SplittableRandom random = new SplittableRandom(seed ^ (0x9E3779B97F4A7C15L * (index + 1)));
+                    int offset = index * point.length;
+                    for (int d = 0; d < point.length; d++) {
+                        point[d] = lower + width * ((lhsStrata[offset + d] + random.nextDouble()) / starts);
+                    }
+                    break;
+                }
+                case SOBOL: {
+                    // skip the all-zero first point, which sits on the lower corner
+                    long gray = (index + 1) ^ ((index + 1) >>> 1);
+                    for (int d = 0; d < point.length; d++) {
+                        int x = 0;
+                        for (int bit = 0; gray >>> bit != 0; bit++) {
+                            if (((gray >>> bit) & 1) != 0) {
+                                x ^= sobolDirections[d][bit];
+                            }
+                        }
+                        point[d] = lower + width * ((x & 0xFFFFFFFFL) / 4294967296.0);
+                    }
+                    break;
+                }
+                default: {
+                    SplittableRandom random = new SplittableRandom(seed ^ (0x9E3779B97F4A7C15L * (index + 1)));
+                    for (int d = 0; d < point.length; d++) {
+                        point[d] = lower + width * random.nextDouble();
+                    }
+                }
+            }
+        }
+    }
+
+    public static class MultiStartResult {
+        private final OptimizationResult best;
+        private final int bestStart;
+        private final int starts;
+        private final int convergedStarts;
+        private final int stoppedStarts;
+        private final int divergedStarts;
+        private final int failedStarts;
+        private final List<String> failures;
+        private final double meanObjectiveValue;
+        private final double worstObjectiveValue;
+        private final double meanIterations;
+        private final long functionEvaluations;
+
+        MultiStartResult(OptimizationResult best, int bestStart, int starts, int convergedStarts, int stoppedStarts,
+                int divergedStarts, int failedStarts, List<String> failures, double meanObjectiveValue,
+                double worstObjectiveValue, double meanIterations, long functionEvaluations) {
+            this.best = best;
+            this.bestStart = bestStart;
+            this.starts = starts;
+            this.convergedStarts = convergedStarts;
+            this.stoppedStarts = stoppedStarts;
+            this.divergedStarts = divergedStarts;
+            this.failedStarts = failedStarts;
+            this.failures = failures;
+            this.meanObjectiveValue = meanObjectiveValue;
+            this.worstObjectiveValue = worstObjectiveValue;
+            this.meanIterations = meanIterations;
+            this.functionEvaluations = functionEvaluations;
+        }
+
+        // null when no start finished on a finite value
+        public OptimizationResult getBest() {
+            return best;
+        }
+
+        public int getBestStart() {
+            return bestStart;
+        }
+
+        public int getStarts() {
+            return starts;
+        }
+
+        public int getConvergedStarts() {
+            return convergedStarts;
+        }
+
+        public int getStoppedStarts() {
+            return stoppedStarts;
+        }
+
+        // finished starts whose objective value is not finite, not part of the value statistics
+        public int getDivergedStarts() {
+            return divergedStarts;
+        }
+
+        // starts whose run threw, these are not counted in getStarts
+        public int getFailedStarts() {
+            return failedStarts;
+        }
+
+        public List<String> getFailures() {
+            return failures;
+        }
+
+        public double getMeanObjectiveValue() {
+            return meanObjectiveValue;
+        }
+
+        public double getWorstObjectiveValue() {
+            return worstObjectiveValue;
+        }
+
+        public double getMeanIterations() {
+            return meanIterations;
+        }
+
+        public long getFunctionEvaluations() {
+            return functionEvaluations;
+        }
+
+        void addSummary(ArrayList<String> outputArray) {
+            DecimalFormat df = new DecimalFormat("0.00000");
+            outputArray.add("Starts: " + starts);
+            outputArray.add("Converged Starts: " + convergedStarts);
+            outputArray.add("Stopped Early: " + stoppedStarts);
+            if (divergedStarts > 0) {
+                outputArray.add("Diverged Starts: " + divergedStarts);
+            }
+            if (failedStarts > 0) {
+                outputArray.add("Failed Starts: " + failedStarts);
+                for (String failure : failures) {
+                    outputArray.add("Error: " + failure);
+                }
+            }
+            if (starts == 0) {
+                return;
+            }
+            outputArray.add("Mean Iterations: " + df.format(meanIterations));
+            outputArray.add("Function Evaluations: " + functionEvaluations);
+            if (best == null) {
+                outputArray.add("");
+                outputArray.add("No start finished on a finite objective function value.");
+                return;
+            }
+            outputArray.add("Mean Objective Function Value: " + df.format(meanObjectiveValue));
+            outputArray.add("Worst Objective Function Value: " + df.format(worstObjectiveValue));
+            outputArray.add("");
+            outputArray.add("Best Start: " + (bestStart + 1));
+            outputArray.add("Best Objective Function Value: " + df.format(best.getObjectiveValue()));
+            outputArray.add("Best x-values: " + SteepestDescentOptimizer.arrayToString(best.getVariables()));
+        }
+    }
+
+    public static class MultiStartOptimizer {
+        // a start is never pruned before it has run this many iterations
+        static final int MIN_ITERATIONS_BEFORE_PRUNING = 10;
+
+        // Runs one optimization per sampled start on a bounded work-stealing pool. Starts whose
+        // current objective is worse than the best value seen by any start by more than
+        // margin * max(1, |best|) are stopped early, Double.POSITIVE_INFINITY disables pruning.
+        // Solvers and start-point buffers are per thread, so memory does not grow with the number
+        // of starts.
+        public static MultiStartResult run(ObjectiveFunction objectiveFunction, int dimensionality, int starts,
+                Sampling sampling, long seed, int iterations, double tolerance, double stepSize, double margin,
+                OptimizerOptions options, int threads) throws InterruptedException {
+            options.requireNoCheckpoint("in multi-start mode");
+            if (starts < 1) {
+                throw new IllegalArgumentException("Error: Starts must be at least 1.");
+            }
+            if (threads < 1) {
+                throw new IllegalArgumentException("Error: Threads must be at least 1.");
+            }
+            if (!(margin >= 0)) {
+                throw new IllegalArgumentException("Error: Margin must not be negative.");
+            }
+            StartSampler sampler = new StartSampler(sampling, starts, dimensionality, objectiveFunction.getBounds(),
+                    seed);
+            AtomicLong bestValueBits = new AtomicLong(Double.doubleToLongBits(Double.POSITIVE_INFINITY));
+            ThreadLocal<Solver> solvers = ThreadLocal.withInitial(options.solverType::create);
+            ThreadLocal<double[]> points = ThreadLocal.withInitial(() -> new double[dimensionality]);
+            MultiStartStatistics statistics = new MultiStartStatistics();
+            ExecutorService executor = Executors.newWorkStealingPool(threads);
+            try {
+                for (int start = 0; start < starts; start++) {
+                    int currentStart = start;
+                    executor.execute(() -> {
+                        double[] point = points.get();
+                        sampler.sample(currentStart, point);
+                        try {
+                            OptimizationResult result = solvers.get().solve(objectiveFunction, point, iterations,
+                                    tolerance, stepSize, dimensionality, options,
+                                    new PruningListener(bestValueBits, margin));
+                            statistics.add(currentStart, result);
+                        } catch (RuntimeException e) {
+                            statistics.addFailure(e.getMessage() != null ? e.getMessage() : e.toString());
+                        }
+                    });
+                }
+            } finally {
+                executor.shutdown();
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+            return statistics.toResult();
+        }
+    }
+
+    static final class PruningListener implements IterationListener {
+        private final AtomicLong bestValueBits;
+        private final double margin;
+        private boolean stop;
+
+        PruningListener(AtomicLong bestValueBits, double margin) {
+            this.bestValueBits = bestValueBits;
+            this.margin = margin;
+        }
+
+        @Override
+        public void onIteration(int iteration, double objectiveValue, double[] variables, double currentTolerance) {
+            if (Double.isNaN(objectiveValue)) {
+                stop = true;
+                return;
+            }
+            // lower the shared best with a compare-and-set loop
+            long bits = bestValueBits.get();
+            while (objectiveValue < Double.longBitsToDouble(bits)
+                    && !bestValueBits.compareAndSet(bits, Double.doubleToLongBits(objectiveValue))) {
+                bits = bestValueBits.get();
+            }
+            double best = Double.longBitsToDouble(bestValueBits.get());
+            stop = iteration > MultiStartOptimizer.MIN_ITERATIONS_BEFORE_PRUNING
+                    && objectiveValue > best + margin * Math.max(1, Math.abs(best));
+        }
+
+        @Override
+        public void onConverged(int iteration, double objectiveValue, double[] variables, double currentTolerance) {
+        }
+
+        @Override
+        public void onComplete(OptimizationResult result) {
+        }
+
+        @Override
+        public boolean isStopRequested() {
+            return stop;
+        }
+    }
+
+    static final class MultiStartStatistics {
+        private OptimizationResult best;
+        private int bestStart = -1;
+        private int starts;
+        private int convergedStarts;
+        private int stoppedStarts;
+        // starts that ended on a value that is not finite, left out of the objective value statistics
+        private int divergedStarts;
+        private int finiteStarts;
+        private double sumObjectiveValue;
+        private double worstObjectiveValue = Double.NEGATIVE_INFINITY;
+        private long sumIterations;
+        private long functionEvaluations;
+        // failure message to number of starts that threw it, sorted so the output is deterministic
+        private final TreeMap<String, Integer> failures = new TreeMap<>();
+
+        synchronized void add(int start, OptimizationResult result) {
+            starts++;
+            if (result.isConverged()) {
+                convergedStarts++;
+            }
+            if (result.isStoppedEarly()) {
+                stoppedStarts++;
+            }
+            sumIterations += result.getIterations();
+            functionEvaluations += result.getFunctionEvaluations();
+            double value = result.getObjectiveValue();
+            if (result.getTerminationReason() == TerminationReason.DIVERGED || !Double.isFinite(value)) {
+                divergedStarts++;
+                return;
+            }
+            finiteStarts++;
+            sumObjectiveValue += value;
+            worstObjectiveValue = Math.max(worstObjectiveValue, value);
+            // ties go to the lower start index so the answer does not depend on completion order
+            if (best == null || value < best.getObjectiveValue()
+                    || (value == best.getObjectiveValue() && start < bestStart)) {
+                best = result;
+                bestStart = start;
+            }
+        }
+
+        synchronized void addFailure(String message) {
+            // the summary adds its own prefix
+            if (message.startsWith("Error: ")) {
+                message = message.substring(7);
+            }
+            failures.merge(message, 1, Integer::sum);
+        }
+
+        synchronized MultiStartResult toResult() {
+            int failedStarts = 0;
+            ArrayList<String> failureLines = new ArrayList<>();
+            for (Map.Entry<String, Integer> failure : failures.entrySet()) {
+                failedStarts += failure.getValue();
+                failureLines.add(failure.getValue() + (failure.getValue() == 1 ? " start" : " starts")
+                        + " failed: " + failure.getKey());
+            }
+            return new MultiStartResult(best, bestStart, starts, convergedStarts, stoppedStarts, divergedStarts,
+                    failedStarts, failureLines,
+                    finiteStarts == 0 ? Double.NaN : sumObjectiveValue / finiteStarts,
+                    finiteStarts == 0 ? Double.NaN : worstObjectiveValue,
+                    starts == 0 ? Double.NaN : (double) sumIterations / starts, functionEvaluations);
+        }
+    }
+
+    // A config file: objective name, dimensionality, iterations, tolerance, step size and the
+    // space-separated starting point on one line each, then optional settings lines (see
+    // OptimizerOptions.parseSetting). Invalid settings are collected instead of thrown so they are
+    // reported together with the validation errors.
+    public static class RunConfig {
+        final String objectiveFunctionName;
+        final int dimensionality;
+        final int iterations;
+        final double tolerance;
+        final double stepSize;
+        final double[] startingPoint;
+        final OptimizerOptions options = new OptimizerOptions();
+        final ArrayList<String> settingErrors = new ArrayList<>();
+
+        private RunConfig(String objectiveFunctionName, int dimensionality, int iterations, double tolerance,
+                double stepSize, double[] startingPoint) {
+            this.objectiveFunctionName = objectiveFunctionName;
+            this.dimensionality = dimensionality;
+            this.iterations = iterations;
+            this.tolerance = tolerance;
+            this.stepSize = stepSize;
+            this.startingPoint = startingPoint;
+        }
+
+        // NumberFormatException for invalid numbers, IllegalArgumentException when lines are missing
+        static RunConfig read(BufferedReader br) throws IOException {
+            String objectiveFunctionName = requiredLine(br);
+            int dimensionality = Integer.parseInt(requiredLine(br));
+            int iterations = Integer.parseInt(requiredLine(br));
+            double tolerance = Double.parseDouble(requiredLine(br));
+            double stepSize = Double.parseDouble(requiredLine(br));
+            double[] startingPoint = parsePoint(requiredLine(br));
+            RunConfig config = new RunConfig(objectiveFunctionName, dimensionality, iterations, tolerance, stepSize,
+                    startingPoint);
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    config.options.parseSetting(line);
+                } catch (IllegalArgumentException e) {
+                    config.settingErrors.add(e.getMessage());
+                }
+            }
+            return config;
+        }
+
+        private static String requiredLine(BufferedReader br) throws IOException {
+            String line = br.readLine();
+            if (line == null) {
+                throw new IllegalArgumentException("Error: The config file is incomplete.");
+            }
+            return line.trim();
+        }
+
+        // parses whitespace-separated values straight into a double[] without boxing
+        static double[] parsePoint(String line) {
+            double[] point = new double[8];
+            int count = 0;
+            int length = line.length();
+            int i = 0;
+            while (i < length) {
+                while (i < length && Character.isWhitespace(line.charAt(i))) {
+                    i++;
+                }
+                int start = i;
+                while (i < length && !Character.isWhitespace(line.charAt(i))) {
+                    i++;
+                }
+                if (start == i) {
+                    break;
+                }
+                if (count == point.length) {
+                    point = Arrays.copyOf(point, count * 2);
+                }
+                point[count++] = Double.parseDouble(line.substring(start, i));
+            }
+            return count == point.length ? point : Arrays.copyOf(point, count);
+        }
+    }
+
+    public static class BatchJob {
+        final int jobNumber;
+        final String objectiveFunctionName;
+        final int dimensionality;
+        final int iterations;
+        final double tolerance;
+        final double stepSize;
+        final double[] startingPoint;
+        final OptimizerOptions options;
+
+        BatchJob(int jobNumber, String objectiveFunctionName, int dimensionality, int iterations, double tolerance,
+                double stepSize, double[] startingPoint, OptimizerOptions options) {
+            this.jobNumber = jobNumber;
+            this.objectiveFunctionName = objectiveFunctionName;
+            this.dimensionality = dimensionality;
+            this.iterations = iterations;
+            this.tolerance = tolerance;
+            this.stepSize = stepSize;
+            this.startingPoint = startingPoint;
+            this.options = options;
+        }
+
+        // manifest line format: name dimensionality iterations tolerance stepSize x1 x2 ... xn
+        static BatchJob parse(int jobNumber, String line, OptimizerOptions options) {
+            String[] tokens = line.trim().split("\\s+");
+            if (tokens.length < 6) {
+                throw new IllegalArgumentException("Error: Job " + jobNumber + " has too few fields.");
+            }
+            double[] startingPoint = new double[tokens.length - 5];
+            for (int i = 0; i < startingPoint.length; i++) {
+                startingPoint[i] = Double.parseDouble(tokens[i + 5]);
+            }
+            return new BatchJob(jobNumber, tokens[0], Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]),
+                    Double.parseDouble(tokens[3]), Double.parseDouble(tokens[4]), startingPoint, options);
+        }
+
+        // streams the job's output, or its errors, to lineSink
+        void run(Consumer<String> lineSink) {
+            ArrayList<String> outputArray = new ArrayList<>();
+            ArrayList<String> errorArray = new ArrayList<>();
+            ObjectiveFunction objFunc = SteepestDescentOptimizer.createObjectiveFunction(objectiveFunctionName);
+            if (objFunc == null) {
+                errorArray.add("Error: Unknown objective function.");
+            } else {
+                SteepestDescentOptimizer.getValidatedInput(objFunc, dimensionality, startingPoint, errorArray);
+            }
+            if (!errorArray.isEmpty()) {
+                errorArray.forEach(lineSink);
+                return;
+            }
+            double[] variables = startingPoint.clone();
+            SteepestDescentOptimizer.addHeader(objFunc, variables, iterations, tolerance, stepSize, dimensionality,
+                    options, outputArray);
+            outputArray.forEach(lineSink);
+            SteepestDescentOptimizer.optimize(objFunc, variables, iterations, tolerance, stepSize, dimensionality,
+                    options, new TextTraceWriter(lineSink, options.sampleEvery));
+        }
+    }
+
+    public static class BatchOptimizer {
+        // runs every job in the manifest on a bounded work-stealing pool and writes each job's
+        // output as soon as it finishes, so output order follows completion order
+        public static void runBatch(BufferedReader manifest, int threads, OptimizerOptions options, PrintStream out)
+                throws IOException, InterruptedException {
+            options.requireNoCheckpoint("in batch mode");
+            ExecutorService executor = Executors.newWorkStealingPool(threads);
+            // cap jobs in flight so huge manifests are streamed instead of queued up front
+            Semaphore inFlight = new Semaphore(threads * 4);
+            int jobNumber = 0;
+            String line;
+            try {
+                while ((line = manifest.readLine()) != null) {
+                    if (line.isBlank() || line.trim().startsWith("#")) {
+                        continue;
+                    }
+                    jobNumber++;
+                    int currentJob = jobNumber;
+                    String currentLine = line;
+                    inFlight.acquire();
+                    executor.execute(() -> {
+                        try (TraceSpool result = new TraceSpool()) {
+                            try {
+                                BatchJob.parse(currentJob, currentLine, options).run(result::add);
+                            } catch (IllegalArgumentException e) {
+                                // NumberFormatException is an IllegalArgumentException
+                                result.clear();
+                                result.add(e instanceof NumberFormatException
+                                        ? "Error: Job " + currentJob + " has an invalid number."
+                                        : e.getMessage());
+                            } catch (RuntimeException e) {
+                                result.clear();
+                                result.add("Error: Job " + currentJob + " failed: " + e);
+                            } finally {
+                                inFlight.release();
+                            }
+                            writeResult(out, currentJob, result);
+                        }
+                    });
+                }
+            } finally {
+                executor.shutdown();
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+            out.flush();
+        }
+
+        private static void writeResult(PrintStream out, int jobNumber, TraceSpool result) {
+            // writing the whole job under the lock keeps concurrent results from interleaving
+            synchronized (out) {
+                out.print("Job " + jobNumber + ":" + System.lineSeparator());
+                try {
+                    result.writeTo(out);
+                } catch (IOException e) {
+                    out.println("Error: Job " + jobNumber + " output could not be read back: " + e.getMessage());
+                }
+                out.print(System.lineSeparator());
+            }
+        }
+
+        // Holds one job's output until it can be written in one piece. Lines stay in memory up to
+        // MEMORY_LIMIT characters and are spilled to a temporary file after that, so a job in flight
+        // holds a bounded amount of heap however long its trace is.
+        static final class TraceSpool implements Closeable {
+            private static final int MEMORY_LIMIT = 1 << 20;
+
+            private final StringBuilder buffer = new StringBuilder();
+            private Path file;
+            private BufferedWriter writer;
+
+            void add(String line) {
+                buffer.append(line).append(System.lineSeparator());
+                if (buffer.length() > MEMORY_LIMIT) {
+                    try {
+                        if (writer == null) {
+                            file = Files.createTempFile("optimizer-job", ".txt");
+                            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+                        }
+                        writer.append(buffer);
+                        buffer.setLength(0);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+
+            // drops everything added so far
+            void clear() {
+                buffer.setLength(0);
+                close();
+            }
+
+            void writeTo(PrintStream out) throws IOException {
+                if (writer != null) {
+                    writer.flush();
+                    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                        char[] chunk = new char[1 << 16];
+                        int read;
+                        while ((read = reader.read(chunk)) > 0) {
+                            out.print(String.valueOf(chunk, 0, read));
+                        }
+                    }
+                }
+                out.print(buffer);
+            }
+
+            @Override
+            public void close() {
+                if (writer != null) {
+                    try {
+                        writer.close();
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        // a leftover temporary file is harmless
+                    }
+                    writer = null;
+                    file = null;
+                }
+            }
+        }
+    }
+
+    // Writes a file under a temporary name in the same directory and renames it over the target, so
+    // readers and restarts only ever see the previous complete file or the new complete file.
+    static final class AtomicFiles {
+        interface Writer {
+            void write(DataOutputStream out) throws IOException;
+        }
+
+        static void write(Path target, Writer writer) throws IOException {
+            Path directory = target.toAbsolutePath().getParent();
+            Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                    writer.write(out);
+                }
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    // Caches final results by configuration. A run is deterministic for a given objective, dimensionality,
+    // iteration cap, tolerance, step size, starting point and options, so a hit is exact. Memory is an
+    // LRU map bounded both by entry count and by an estimate of the bytes held. With a directory the
+    // cache also keeps results on disk, which survives restarts; the disk tier holds at most maxDiskEntries
+    // files and deletes the oldest written first. Disk files are written to a temporary name and renamed
+    // so a crash never leaves a half-written entry. Runs that were stopped early are never cached because
+    // where they stopped depends on timing.
+    public static class ResultCache {
+        private static final int FILE_MAGIC = 0x4F505432; // "OPT2", "OPTR" files predate termination reasons
+        // rough per-entry cost of the map node, key string and result object
+        private static final long ENTRY_OVERHEAD_BYTES = 256;
+
+        private final int maxEntries;
+        private final long maxBytes;
+        private final Path directory;
+        private final int maxDiskEntries;
+        // keys of the files in the directory, oldest written first
+        private final LinkedHashSet<String> diskKeys = new LinkedHashSet<>();
+        private final LinkedHashMap<String, OptimizationResult> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes;
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong diskHits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+
+        public ResultCache(int maxEntries, long maxBytes, Path directory, int maxDiskEntries) throws IOException {
+            if (maxEntries < 1 || maxBytes < 1 || maxDiskEntries < 1) {
+                throw new IllegalArgumentException("Error: Cache limits must be positive.");
+            }
+            this.maxEntries = maxEntries;
+            this.maxBytes = maxBytes;
+            this.directory = directory;
+            this.maxDiskEntries = maxDiskEntries;
+            if (directory != null) {
+                Files.createDirectories(directory);
+                // pick up the entries of earlier runs in the order they were written
+                ArrayList<Path> files = new ArrayList<>();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.result")) {
+                    for (Path file : stream) {
+                        files.add(file);
+                    }
+                }
+                TreeMap<Long, List<String>> byTime = new TreeMap<>();
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    byTime.computeIfAbsent(Files.getLastModifiedTime(file).toMillis(), t -> new ArrayList<>())
+                            .add(name.substring(0, name.length() - ".result".length()));
+                }
+                for (List<String> keys : byTime.values()) {
+                    diskKeys.addAll(keys);
+                }
+                trimDisk();
+            }
+        }
+
+        // SHA-256 over the exact bits of every input, so 0.1 and 0.1000000000000000055 are the same key
+        // but -0.0 and 0.0 are not
+        public static String key(ObjectiveFunction objFunc, int dimensionality, int iterations, double tolerance,
+                double stepSize, double[] startingPoint, OptimizerOptions options) {
+            ByteBuffer buffer = ByteBuffer.allocate(160 + 8 * startingPoint.length);
+            buffer.putInt(dimensionality).putInt(iterations);
+            buffer.putLong(Double.doubleToRawLongBits(tolerance)).putLong(Double.doubleToRawLongBits(stepSize));
+            for (double x : startingPoint) {
+                buffer.putLong(Double.doubleToRawLongBits(x));
+            }
+            buffer.putInt(options.getNumericMode().ordinal()).putInt(options.getStepPolicy().ordinal());
+            buffer.putInt(options.getSolverType().ordinal()).putInt(options.getHistorySize());
+            buffer.putLong(Double.doubleToRawLongBits(options.getMomentum()));
+            // the parallel sum may differ from the sequential one in the last bits
+            buffer.put((byte) (options.isParallel() ? 1 : 0));
+            if (options.getSolverType() == SolverType.STOCHASTIC) {
+                buffer.putInt(options.getBatchSize()).putInt(options.getDecayEvery());
+                buffer.putLong(Double.doubleToRawLongBits(options.getDecay())).putLong(options.getSeed());
+            }
+            // runs without the optional stopping criteria keep their earlier keys
+            if (ConvergenceMonitor.isEnabled(options) || options.getMaxValue() != Double.POSITIVE_INFINITY) {
+                buffer.putLong(Double.doubleToRawLongBits(options.getObjectiveChange()));
+                buffer.putLong(Double.doubleToRawLongBits(options.getStepNorm()));
+                buffer.putInt(options.getStallWindow());
+                buffer.putLong(Double.doubleToRawLongBits(options.getMaxValue()));
+            }
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(objFunc.getConfigurationKey().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(buffer.array(), 0, buffer.position());
+                StringBuilder sb = new StringBuilder();
+                for (byte b : digest.digest()) {
+                    sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+                }
+                return sb.toString();
+            } catch (NoSuchAlgorithmException e) {
+                // every JDK ships SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+
+        // returns a copy of the cached result, or null on a miss
+        public OptimizationResult get(String key) {
+            OptimizationResult result;
+            synchronized (this) {
+                result = entries.get(key);
+            }
+            if (result == null && directory != null) {
+                result = read(key);
+                if (result != null) {
+                    diskHits.incrementAndGet();
+                    remember(key, result);
+                }
+            }
+            if (result == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return copy(result);
+        }
+
+        public void put(String key, OptimizationResult result) {
+            if (result.isStoppedEarly()) {
+                return;
+            }
+            OptimizationResult stored = copy(result);
+            remember(key, stored);
+            if (directory != null) {
+                write(key, stored);
+            }
+        }
+
+        private synchronized void remember(String key, OptimizationResult result) {
+            OptimizationResult previous = entries.put(key, result);
+            if (previous != null) {
+                bytes -= sizeOf(previous);
+            }
+            bytes += sizeOf(result);
+            // evict least recently used entries, but always keep the one just added
+            Iterator<Map.Entry<String, OptimizationResult>> it = entries.entrySet().iterator();
+            while ((entries.size() > maxEntries || bytes > maxBytes) && entries.size() > 1) {
+                Map.Entry<String, OptimizationResult> eldest = it.next();
+                bytes -= sizeOf(eldest.getValue());
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+
+        private static long sizeOf(OptimizationResult result) {
+            return ENTRY_OVERHEAD_BYTES + 8L * result.getVariables().length;
+        }
+
+        private static OptimizationResult copy(OptimizationResult result) {
+            return new OptimizationResult(result.getVariables().clone(), result.getObjectiveValue(),
+                    result.getIterations(), result.getTerminationReason(), result.getStepPolicy(),
+                    result.getFunctionEvaluations(), result.getGradientEvaluations(), null);
+        }
+
+        private void write(String key, OptimizationResult result) {
+            try {
+                AtomicFiles.write(directory.resolve(key + ".result"), out -> {
+                    out.writeInt(FILE_MAGIC);
+                    out.writeInt(result.getVariables().length);
+                    for (double x : result.getVariables()) {
+                        out.writeDouble(x);
+                    }
+                    out.writeDouble(result.getObjectiveValue());
+                    out.writeInt(result.getIterations());
+                    out.writeInt(result.getTerminationReason().ordinal());
+                    out.writeInt(result.getStepPolicy().ordinal());
+                    out.writeLong(result.getFunctionEvaluations());
+                    out.writeLong(result.getGradientEvaluations());
+                });
+                synchronized (diskKeys) {
+                    // a rewrite makes the key the newest again
+                    diskKeys.remove(key);
+                    diskKeys.add(key);
+                    trimDisk();
+                }
+            } catch (IOException e) {
+                // the disk tier is best effort, the entry is still in memory
+            }
+        }
+
+        private void trimDisk() {
+            synchronized (diskKeys) {
+                Iterator<String> it = diskKeys.iterator();
+                while (diskKeys.size() > maxDiskEntries) {
+                    String oldest = it.next();
+                    it.remove();
+                    try {
+                        Files.deleteIfExists(directory.resolve(oldest + ".result"));
+                    } catch (IOException e) {
+                        // a file that cannot be deleted now is simply no longer tracked
+                    }
+                }
+            }
+        }
+
+        private OptimizationResult read(String key) {
+            Path file = directory.resolve(key + ".result");
+            if (!Files.exists(file)) {
+                return null;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() != FILE_MAGIC) {
+                    return null;
+                }
+                double[] variables = new double[in.readInt()];
+                for (int i = 0; i < variables.length; i++) {
+                    variables[i] = in.readDouble();
+                }
+                double objectiveValue = in.readDouble();
+                int iterations = in.readInt();
+                TerminationReason reason = TerminationReason.values()[in.readInt()];
+                StepPolicy stepPolicy = StepPolicy.values()[in.readInt()];
+                long functionEvaluations = in.readLong();
+                long gradientEvaluations = in.readLong();
+                return new OptimizationResult(variables, objectiveValue, iterations, reason, stepPolicy,
+                        functionEvaluations, gradientEvaluations, null);
+            } catch (IOException | RuntimeException e) {
+                // unreadable entries count as misses and get rewritten on the next run
+                return null;
+            }
+        }
+
+        public long getHits() {
+            return hits.get();
+        }
+
+        // hits that had to be loaded from the disk tier, included in getHits()
+        public long getDiskHits() {
+            return diskHits.get();
+        }
+
+        public long getMisses() {
+            return misses.get();
+        }
+
+        public long getEvictions() {
+            return evictions.get();
+        }
+
+        public synchronized int size() {
+            return entries.size();
+        }
+
+        public synchronized long getEstimatedBytes() {
+            return bytes;
+        }
+    }
+
+    // Minimal JSON reader and writer for the server, objects become LinkedHashMaps, arrays ArrayLists,
+    // numbers Doubles. Malformed input throws IllegalArgumentException.
+    static final class Json {
+        // requests are a few levels deep, the cap keeps hostile input from exhausting the stack
+        static final int MAX_DEPTH = 64;
+
+        private final String text;
+        private int position;
+        private int depth;
+
+        private Json(String text) {
+            this.text = text;
+        }
+
+        static Object parse(String text) {
+            Json json = new Json(text);
+            Object value = json.readValue();
+            json.skipWhitespace();
+            if (json.position != text.length()) {
+                throw json.error();
+            }
+            return value;
+        }
+
+        private IllegalArgumentException error() {
+            return new IllegalArgumentException("Error: Malformed JSON at position " + position + ".");
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private Object readValue() {
+            skipWhitespace();
+            if (position >= text.length()) {
+                throw error();
+            }
+            char c = text.charAt(position);
+            if ((c == '{' || c == '[') && depth == MAX_DEPTH) {
+                throw new IllegalArgumentException("Error: JSON is nested more than " + MAX_DEPTH + " levels deep.");
+            }
+            switch (c) {
+                case '{':
+                    return readObject();
+                case '[':
+                    return readArray();
+                case '"':
+                    return readString();
+                case 't':
+                    return readLiteral("true", Boolean.TRUE);
+                case 'f':
+                    return readLiteral("false", Boolean.FALSE);
+                case 'n':
+                    return readLiteral("null", null);
+                default:
+                    return readNumber();
+            }
+        }
+
+        private Object readLiteral(String literal, Object value) {
+            if (!text.startsWith(literal, position)) {
+                throw error();
+            }
+            position += literal.length();
+            return value;
+        }
+
+        private LinkedHashMap<String, Object> readObject() {
+            LinkedHashMap<String, Object> object = new LinkedHashMap<>();
+            position++;
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == '}') {
+                position++;
+                return object;
+            }
+            depth++;
+            while (true) {
+                skipWhitespace();
+                if (position >= text.length() || text.charAt(position) != '"') {
+                    throw error();
+                }
+                String key = readString();
+                skipWhitespace();
+                expect(':');
+                object.put(key, readValue());
+                skipWhitespace();
+                if (position < text.length() && text.charAt(position) == ',') {
+                    position++;
+                } else {
+                    expect('}');
+                    depth--;
+                    return object;
+                }
+            }
+        }
+
+        private ArrayList<Object> readArray() {
+            ArrayList<Object> array = new ArrayList<>();
+            position++;
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == ']') {
+                position++;
+                return array;
+            }
+            depth++;
+            while (true) {
+                array.add(readValue());
+                skipWhitespace();
+                if (position < text.length() && text.charAt(position) == ',') {
+                    position++;
+                } else {
+                    expect(']');
+                    depth--;
+                    return array;
+                }
+            }
+        }
+
+        private void expect(char c) {
+            if (position >= text.length() || text.charAt(position) != c) {
+                throw error();
+            }
+            position++;
+        }
+
+        private String readString() {
+            position++;
+            StringBuilder sb = new StringBuilder();
+            while (position < text.length()) {
+                char c = text.charAt(position++);
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (position >= text.length()) {
+                    break;
+                }
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > text.length()) {
+                            throw error();
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error();
+                        }
+                        position += 4;
+                        break;
+                    default:
+                        sb.append(escaped);
+                }
+            }
+            throw error();
+        }
+
+        private Double readNumber() {
+            int start = position;
+            while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            if (start == position) {
+                throw error();
+            }
+            try {
+                return Double.valueOf(text.substring(start, position));
+            } catch (NumberFormatException e) {
+                position = start;
+                throw error();
+            }
+        }
+
+        static void appendString(StringBuilder sb, String value) {
+            sb.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    sb.append('\\').append(c);
+                } else if (c < 0x20) {
+                    sb.append(String.format("\\u%04x", (int) c));
+                } else {
+                    sb.append(c);
+                }
+            }
+            sb.append('"');
+        }
+
+        // JSON has no NaN or infinity, those are written as null
+        static void appendNumber(StringBuilder sb, double value) {
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                sb.append("null");
+            } else {
+                sb.append(value);
+            }
+        }
+    }
+
+    // Long-running HTTP/JSON front end so callers do not pay a JVM start per optimization.
+    // POST /optimize takes {"objective", "dimensionality", "iterations", "tolerance", "stepSize",
+    // "startingPoint", optional "settings": [...]} and answers with the final point, objective value,
+    // iteration count and termination reason. GET /health reports the queue. Work runs on a fixed pool
+    // behind a bounded queue: when the queue is full the request is refused with 503 and Retry-After
+    // instead of waiting, and a run still going at the request's deadline is stopped and answered with
+    // 504. Identical requests that arrive while one is running share its result instead of running
+    // again; a shared run keeps the deadline of the request that started it. Clients may only name the
+    // formula objectives or the objectives the operator configured at startup, which are loaded once
+    // before the server accepts requests, so no request makes the server open a file.
+    public static class OptimizationServer {
+        static final int MAX_REQUEST_BYTES = 1 << 20;
+
+        private final HttpServer server;
+        private final ThreadPoolExecutor workers;
+        private final ExecutorService handlers;
+        private final long timeoutNanos;
+        private final List<String> defaultSettings;
+        // operator-configured objectives by lower-case name, shared by all jobs
+        private final Map<String, ObjectiveFunction> objectives = new LinkedHashMap<>();
+        // may be null, then every request runs
+        private final ResultCache cache;
+        private final ConcurrentHashMap<String, CompletableFuture<OptimizationResult>> inFlight =
+                new ConcurrentHashMap<>();
+
+        // objectiveSpecs maps the names clients may use to registry specs such as least_squares:<file>
+        public OptimizationServer(int port, int threads, int queueCapacity, long timeoutMillis,
+                List<String> defaultSettings, Map<String, String> objectiveSpecs, ResultCache cache)
+                throws IOException {
+            // defaults are checked once here so a bad command line fails at startup
+            OptimizerOptions check = new OptimizerOptions();
+            for (String setting : defaultSettings) {
+                check.parseSharedSetting(setting, "by the server");
+            }
+            for (Map.Entry<String, String> entry : objectiveSpecs.entrySet()) {
+                String name = entry.getKey().trim().toLowerCase();
+                if (name.isEmpty() || name.contains(":") || BuiltinObjectiveProvider.FORMULA_NAMES.contains(name)) {
+                    throw new IllegalArgumentException("Error: Invalid objective name " + entry.getKey() + ".");
+                }
+                ObjectiveFunction objFunc = ObjectiveRegistry.create(entry.getValue());
+                if (objFunc == null) {
+                    throw new IllegalArgumentException("Error: Unknown objective function " + entry.getValue() + ".");
+                }
+                objectives.put(name, objFunc);
+            }
+            this.defaultSettings = new ArrayList<>(defaultSettings);
+            this.cache = cache;
+            this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity));
+            // handler threads only parse, submit and reply; waiting for a result does not hold one, the
+            // reply is sent from a completion callback, so a small fixed pool serves any number of
+            // waiting requests
+            this.handlers = Executors.newFixedThreadPool(Math.max(2, threads));
+            this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.setExecutor(handlers);
+            server.createContext("/optimize", this::handleOptimize);
+            server.createContext("/health", this::handleHealth);
+        }
+
+        public void start() {
+            server.start();
+        }
+
+        public void stop() {
+            server.stop(0);
+            workers.shutdownNow();
+            handlers.shutdownNow();
+        }
+
+        public int getPort() {
+            return server.getAddress().getPort();
+        }
+
+        private void handleHealth(HttpExchange exchange) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            sb.append("{\"status\":\"ok\",\"active\":").append(workers.getActiveCount());
+            sb.append(",\"queued\":").append(workers.getQueue().size());
+            sb.append(",\"inFlight\":").append(inFlight.size());
+            if (cache != null) {
+                sb.append(",\"cache\":{\"entries\":").append(cache.size());
+                sb.append(",\"bytes\":").append(cache.getEstimatedBytes());
+                sb.append(",\"hits\":").append(cache.getHits());
+                sb.append(",\"diskHits\":").append(cache.getDiskHits());
+                sb.append(",\"misses\":").append(cache.getMisses());
+                sb.append(",\"evictions\":").append(cache.getEvictions()).append('}');
+            }
+            sb.append('}');
+            respond(exchange, 200, sb.toString());
+        }
+
+        private void handleOptimize(HttpExchange exchange) throws IOException {
+            boolean replyLater = false;
+            try {
+                if (!exchange.getRequestMethod().equals("POST")) {
+                    respondError(exchange, 405, "Error: Use POST.");
+                    return;
+                }
+                // browsers cannot send application/json cross-origin without a preflight, so this also
+                // keeps web pages from posting to a loopback server
+                String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+                if (contentType == null || !contentType.toLowerCase().startsWith("application/json")) {
+                    respondError(exchange, 415, "Error: Content-Type must be application/json.");
+                    return;
+                }
+                long deadline = System.nanoTime() + timeoutNanos;
+                byte[] body = exchange.getRequestBody().readNBytes(MAX_REQUEST_BYTES + 1);
+                if (body.length > MAX_REQUEST_BYTES) {
+                    respondError(exchange, 413, "Error: Request is too large.");
+                    return;
+                }
+                ServerJob job;
+                try {
+                    job = ServerJob.parse(new String(body, StandardCharsets.UTF_8), defaultSettings, objectives);
+                } catch (IllegalArgumentException e) {
+                    respondError(exchange, 400, e.getMessage());
+                    return;
+                }
+                CompletableFuture<OptimizationResult> result;
+                try {
+                    result = submit(job, deadline);
+                } catch (RejectedExecutionException e) {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    respondError(exchange, 503, "Error: Server is busy.");
+                    return;
+                }
+                // copy() so this request's timeout does not complete a future other requests share
+                result.copy().orTimeout(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+                        .whenCompleteAsync((optimizationResult, failure) -> reply(exchange, job,
+                                optimizationResult, failure), handlers);
+                replyLater = true;
+            } finally {
+                if (!replyLater) {
+                    exchange.close();
+                }
+            }
+        }
+
+        private void reply(HttpExchange exchange, ServerJob job, OptimizationResult optimizationResult,
+                Throwable failure) {
+            try {
+                if (failure instanceof CompletionException && failure.getCause() != null) {
+                    failure = failure.getCause();
+                }
+                if (failure instanceof TimeoutException) {
+                    respondError(exchange, 504, "Error: Optimization timed out.");
+                } else if (failure instanceof RejectedExecutionException) {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    respondError(exchange, 503, "Error: Server is busy.");
+                } else if (failure != null) {
+                    respondError(exchange, 500, "Error: Optimization failed: " + failure);
+                } else if (optimizationResult.isStoppedEarly()) {
+                    respondError(exchange, 504, "Error: Optimization timed out.");
+                } else {
+                    respond(exchange, 200, job.toJson(optimizationResult));
+                }
+            } catch (IOException e) {
+                // the client went away
+            } finally {
+                exchange.close();
+            }
+        }
+
+        // answers from the cache, joins a running identical job or queues a new one, throws
+        // RejectedExecutionException when the queue is full
+        private CompletableFuture<OptimizationResult> submit(ServerJob job, long deadline) {
+            if (cache != null) {
+                OptimizationResult cached = cache.get(job.key);
+                if (cached != null) {
+                    return CompletableFuture.completedFuture(cached);
+                }
+            }
+            CompletableFuture<OptimizationResult> created = new CompletableFuture<>();
+            CompletableFuture<OptimizationResult> existing = inFlight.putIfAbsent(job.key, created);
+            if (existing != null) {
+                return existing;
+            }
+            try {
+                workers.execute(() -> {
+                    try {
+                        OptimizationResult result = job.run(deadline);
+                        if (cache != null) {
+                            cache.put(job.key, result);
+                        }
+                        created.complete(result);
+                    } catch (Throwable t) {
+                        created.completeExceptionally(t);
+                    } finally {
+                        inFlight.remove(job.key, created);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.remove(job.key, created);
+                // requests that joined in the meantime are refused as well
+                created.completeExceptionally(e);
+                throw e;
+            }
+            return created;
+        }
+
+        private static void respondError(HttpExchange exchange, int status, String message) throws IOException {
+            StringBuilder sb = new StringBuilder("{\"error\":");
+            Json.appendString(sb, message);
+            sb.append('}');
+            respond(exchange, status, sb.toString());
+        }
+
+        private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        }
+    }
+
+    static final class ServerJob {
+        final ObjectiveFunction objectiveFunction;
+        final int dimensionality;
+        final int iterations;
+        final double tolerance;
+        final double stepSize;
+        final double[] startingPoint;
+        final OptimizerOptions options;
+        // hash of the canonical configuration, equal keys give equal results
+        final String key;
+
+        private ServerJob(ObjectiveFunction objectiveFunction, int dimensionality, int iterations, double tolerance,
+                double stepSize, double[] startingPoint, OptimizerOptions options) {
+            this.objectiveFunction = objectiveFunction;
+            this.dimensionality = dimensionality;
+            this.iterations = iterations;
+            this.tolerance = tolerance;
+            this.stepSize = stepSize;
+            this.startingPoint = startingPoint;
+            this.options = options;
+            this.key = ResultCache.key(objectiveFunction, dimensionality, iterations, tolerance, stepSize,
+                    startingPoint, options);
+        }
+
+        // objectives holds the operator-configured objectives, anything else must be a formula objective
+        static ServerJob parse(String body, List<String> defaultSettings, Map<String, ObjectiveFunction> objectives) {
+            Object parsed = Json.parse(body);
+            if (!(parsed instanceof Map)) {
+                throw new IllegalArgumentException("Error: Request must be a JSON object.");
+            }
+            Map<?, ?> request = (Map<?, ?>) parsed;
+            Object name = request.get("objective");
+            if (!(name instanceof String)) {
+                throw new IllegalArgumentException("Error: Missing objective.");
+            }
+            // client specs never reach the registry with an argument, so a request cannot name a file
+            String objectiveName = ((String) name).trim().toLowerCase();
+            ObjectiveFunction objFunc = objectives.get(objectiveName);
+            if (objFunc == null && BuiltinObjectiveProvider.FORMULA_NAMES.contains(objectiveName)) {
+                objFunc = ObjectiveRegistry.create(objectiveName);
+            }
+            if (objFunc == null) {
+                throw new IllegalArgumentException("Error: Unknown objective function.");
+            }
+            int dimensionality = integer(request, "dimensionality");
+            int iterations = integer(request, "iterations");
+            double tolerance = number(request, "tolerance");
+            double stepSize = number(request, "stepSize");
+            if (!(request.get("startingPoint") instanceof List)) {
+                throw new IllegalArgumentException("Error: Missing startingPoint.");
+            }
+            List<?> point = (List<?>) request.get("startingPoint");
+            double[] startingPoint = new double[point.size()];
+            for (int i = 0; i < startingPoint.length; i++) {
+                if (!(point.get(i) instanceof Double)) {
+                    throw new IllegalArgumentException("Error: startingPoint must contain only numbers.");
+                }
+                startingPoint[i] = (Double) point.get(i);
+            }
+            OptimizerOptions options = new OptimizerOptions();
+            for (String setting : defaultSettings) {
+                options.parseSharedSetting(setting, "by the server");
+            }
+            Object settings = request.get("settings");
+            if (settings instanceof List) {
+                for (Object setting : (List<?>) settings) {
+                    options.parseSharedSetting(String.valueOf(setting), "by the server");
+                }
+            } else if (settings != null) {
+                throw new IllegalArgumentException("Error: settings must be an array.");
+            }
+            ArrayList<String> errorArray = new ArrayList<>();
+            SteepestDescentOptimizer.getValidatedInput(objFunc, dimensionality, startingPoint, errorArray);
+            if (!errorArray.isEmpty()) {
+                throw new IllegalArgumentException(errorArray.get(0));
+            }
+            return new ServerJob(objFunc, dimensionality, iterations, tolerance, stepSize, startingPoint, options);
+        }
+
+        private static double number(Map<?, ?> request, String field) {
+            Object value = request.get(field);
+            if (!(value instanceof Double)) {
+                throw new IllegalArgumentException("Error: Missing " + field + ".");
+            }
+            return (Double) value;
+        }
+
+        private static int integer(Map<?, ?> request, String field) {
+            double value = number(request, field);
+            if (value != Math.rint(value) || value < 0 || value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Error: " + field + " must be a non-negative integer.");
+            }
+            return (int) value;
+        }
+
+        OptimizationResult run(long deadline) {
+            double[] variables = startingPoint.clone();
+            return SteepestDescentOptimizer.optimize(objectiveFunction, variables, iterations, tolerance, stepSize,
+                    dimensionality, options, new DeadlineListener(deadline));
+        }
+
+        String toJson(OptimizationResult result) {
+            StringBuilder sb = new StringBuilder("{\"objective\":");
+            Json.appendString(sb, objectiveFunction.getName());
+            sb.append(",\"variables\":[");
+            double[] variables = result.getVariables();
+            for (int i = 0; i < variables.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                Json.appendNumber(sb, variables[i]);
+            }
+            sb.append("],\"objectiveValue\":");
+            Json.appendNumber(sb, result.getObjectiveValue());
+            sb.append(",\"iterations\":").append(result.getIterations());
+            sb.append(",\"converged\":").append(result.isConverged());
+            sb.append(",\"terminationReason\":");
+            Json.appendString(sb, result.getTerminationReason().name().toLowerCase());
+            sb.append(",\"functionEvaluations\":").append(result.getFunctionEvaluations());
+            sb.append(",\"gradientEvaluations\":").append(result.getGradientEvaluations());
+            if (result.getMetrics() != null) {
+                sb.append(",\"metrics\":").append(result.getMetrics().toJson());
+            }
+            sb.append('}');
+            return sb.toString();
+        }
+    }
+
+    // stops a run once its deadline has passed or its thread was interrupted by shutdown
+    static final class DeadlineListener implements IterationListener {
+        private final long deadline;
+
+        DeadlineListener(long deadline) {
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void onIteration(int iteration, double objectiveValue, double[] variables, double currentTolerance) {
+        }
+
+        @Override
+        public void onConverged(int iteration, double objectiveValue, double[] variables, double currentTolerance) {
+        }
+
+        @Override
+        public void onComplete(OptimizationResult result) {
+        }
+
+        @Override
+        public boolean isStopRequested() {
+            return System.nanoTime() - deadline > 0 || Thread.currentThread().isInterrupted();
+        }
+    }
+
+    private static void runServer(String[] args) {
+        int port = 8080;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int queueCapacity = 64;
+        long timeoutMillis = 10_000;
+        int cacheEntries = 1024;
+        long cacheMegabytes = 64;
+        Path cacheDirectory = null;
+        int cacheDiskEntries = 10_000;
+        LinkedHashMap<String, String> objectiveSpecs = new LinkedHashMap<>();
+        ArrayList<String> settings = new ArrayList<>();
+        try {
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.startsWith("port=")) {
+                    port = Integer.parseInt(arg.substring(5));
+                } else if (arg.startsWith("threads=")) {
+                    threads = Integer.parseInt(arg.substring(8));
+                } else if (arg.startsWith("queue=")) {
+                    queueCapacity = Integer.parseInt(arg.substring(6));
+                } else if (arg.startsWith("timeout-ms=")) {
+                    timeoutMillis = Long.parseLong(arg.substring(11));
+                } else if (arg.startsWith("cache=")) {
+                    cacheEntries = Integer.parseInt(arg.substring(6));
+                } else if (arg.startsWith("cache-mb=")) {
+                    cacheMegabytes = Long.parseLong(arg.substring(9));
+                } else if (arg.startsWith("cache-dir=")) {
+                    cacheDirectory = Paths.get(arg.substring(10));
+                } else if (arg.startsWith("cache-disk=")) {
+                    cacheDiskEntries = Integer.parseInt(arg.substring(11));
+                } else if (arg.startsWith("objective=")) {
+                    // objective=<name>=<spec>, for example objective=houses=least_squares:houses.bin
+                    int equals = arg.indexOf('=', 10);
+                    if (equals < 0) {
+                        throw new IllegalArgumentException("Error: Use objective=<name>=<spec>.");
+                    }
+                    objectiveSpecs.put(arg.substring(10, equals), arg.substring(equals + 1));
+                } else {
+                    settings.add(arg);
+                }
+            }
+            // cache=0 turns the result cache off
+            ResultCache cache = cacheEntries == 0 ? null
+                    : new ResultCache(cacheEntries, cacheMegabytes << 20, cacheDirectory, cacheDiskEntries);
+            OptimizationServer server = new OptimizationServer(port, threads, queueCapacity, timeoutMillis,
+                    settings, objectiveSpecs, cache);
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+            server.start();
+            System.out.println("Listening on http://127.0.0.1:" + server.getPort());
+        } catch (NumberFormatException e) {
+            System.out.println("Error: Invalid number.");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Error: Could not start the server: " + e.getMessage());
+        }
+    }
+
+    // --convert-matrix <input> <output>: stores a Matrix Market matrix in the binary CSR layout, which
+    // loads with bulk copies from a mapping instead of text parsing
+    private static void convertMatrix(String[] args) {
+        try {
+            SparseMatrix matrix = SparseMatrix.read(Paths.get(args[1]));
+            matrix.writeCsr(Paths.get(args[2]));
+            System.out.println("Wrote " + matrix.size + " rows and " + matrix.nonZeros() + " non-zeros to "
+                    + args[2] + ".");
+        } catch (NumberFormatException e) {
+            System.out.println("Error: Invalid number in " + args[1] + ".");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Error reading the file.");
+        }
+    }
+
+    // --convert-dataset <input.csv> <output>: writes the binary layout read by DatasetObjective
+    private static void convertDataset(String[] args) {
+        try (BufferedReader br = new BufferedReader(new FileReader(args[1]))) {
+            long samples = DatasetObjective.convertCsv(br, Paths.get(args[2]));
+            System.out.println("Wrote " + samples + " samples to " + args[2] + ".");
+        } catch (NumberFormatException e) {
+            System.out.println("Error: Invalid number in " + args[1] + ".");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Error reading the file.");
+        }
+    }
+
+    private static void runBatch(String[] args) {
+        int threads;
+        OptimizerOptions options = new OptimizerOptions();
+        try {
+            threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            if (threads < 1) {
+                throw new IllegalArgumentException("Error: Threads must be at least 1.");
+            }
+            for (int i = 3; i < args.length; i++) {
+                options.parseSharedSetting(args[i], "in batch mode");
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Error: Invalid number.");
+            return;
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        try (BufferedReader br = new BufferedReader(new FileReader(args[1]))) {
+            PrintStream out = new PrintStream(new BufferedOutputStream(System.out), false);
+            BatchOptimizer.runBatch(br, threads, options, out);
+        } catch (IOException e) {
+            System.out.println("Error reading the file.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void runMultiStart(String[] args) {
+        ArrayList<String> outputArray = new ArrayList<>();
+        try {
+            ObjectiveFunction objFunc = SteepestDescentOptimizer.createObjectiveFunction(args[1]);
+            if (objFunc == null) {
+                throw new IllegalArgumentException("Error: Unknown objective function.");
+            }
+            int dimensionality = Integer.parseInt(args[2]);
+            int starts = Integer.parseInt(args[3]);
+            int iterations = Integer.parseInt(args[4]);
+            double tolerance = Double.parseDouble(args[5]);
+            double stepSize = Double.parseDouble(args[6]);
+            Sampling sampling = Sampling.UNIFORM;
+            double margin = 1.0;
+            long seed = 0;
+            int threads = Runtime.getRuntime().availableProcessors();
+            OptimizerOptions options = new OptimizerOptions();
+            for (int i = 7; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.startsWith("margin=")) {
+                    margin = Double.parseDouble(arg.substring(7));
+                } else if (arg.startsWith("seed=")) {
+                    seed = Long.parseLong(arg.substring(5));
+                } else if (arg.startsWith("threads=")) {
+                    threads = Integer.parseInt(arg.substring(8));
+                } else {
+                    try {
+                        sampling = Sampling.fromName(arg);
+                    } catch (IllegalArgumentException e) {
+                        options.parseSharedSetting(arg, "in multi-start mode");
+                    }
+                }
+            }
+            MultiStartResult result = MultiStartOptimizer.run(objFunc, dimensionality, starts, sampling, seed,
+                    iterations, tolerance, stepSize, margin, options, threads);
+            outputArray.add("Objective Function: " + objFunc.getName());
+            outputArray.add("Dimensionality: " + dimensionality);
+            outputArray.add("Sampling: " + sampling.name().toLowerCase());
+            result.addSummary(outputArray);
+        } catch (NumberFormatException e) {
+            outputArray.add("Error: Invalid number.");
+        } catch (IllegalArgumentException e) {
+            outputArray.add(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (String s : outputArray) {
+            System.out.println(s);
+        }
+    }
+
+    // exit codes of the non-interactive entry points
+    static final int EXIT_OK = 0;
+    static final int EXIT_INVALID_INPUT = 1;
+    static final int EXIT_IO_ERROR = 2;
+    // a mode flag with missing or extra arguments, see usage
+    static final int EXIT_USAGE = 64;
+
+    // --config <file> [--output <file>] [--format text|binary] [settings...]
+    // Runs one config file without prompts. Text goes to stdout unless --output is given, a .gz output
+    // is compressed. Binary writes the BinaryTrajectoryWriter layout and needs --output. Settings
+    // after the options are applied on top of the ones in the file. Errors go to stderr and the
+    // return value is one of the exit codes above, only main turns it into the process status.
+    //
+    // Startup dominates short runs, so this path touches only the classes it needs: no Scanner, no
+    // ServiceLoader scan for built-in objectives, JMX only with the metrics setting and JFR events only
+    // while a recording runs. Nothing on it uses reflection, so it also builds as a GraalVM native
+    // image (native-image -jar optimizer.jar). AppCDS needs the classes in a jar; record the archive
+    // once and reuse it for every later run:
+    //   jar cfe optimizer.jar Optimizer *.class
+    //   java -XX:ArchiveClassesAtExit=optimizer.jsa -jar optimizer.jar --config <representative config>
+    //   java -XX:SharedArchiveFile=optimizer.jsa -jar optimizer.jar --config <config> --output <file>
+    static int runConfig(String[] args) {
+        String configPath = args[1];
+        String outputPath = null;
+        String format = "text";
+        ArrayList<String> settings = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            if ((args[i].equals("--output") || args[i].equals("--format")) && i + 1 < args.length) {
+                if (args[i].equals("--output")) {
+                    outputPath = args[++i];
+                } else {
+                    format = args[++i].toLowerCase();
+                }
+            } else {
+                settings.add(args[i]);
+            }
+        }
+        if (!format.equals("text") && !format.equals("binary")) {
+            System.err.println("Error: Unknown format " + format + ", expected text or binary.");
+            return EXIT_INVALID_INPUT;
+        }
+        if (format.equals("binary") && outputPath == null) {
+            System.err.println("Error: Binary output needs --output.");
+            return EXIT_INVALID_INPUT;
+        }
+        RunConfig config;
+        try (BufferedReader br = new BufferedReader(new FileReader(configPath))) {
+            config = RunConfig.read(br);
+        } catch (FileNotFoundException e) {
+            System.err.println("Error: File not found: " + configPath + ".");
+            return EXIT_IO_ERROR;
+        } catch (IOException e) {
+            System.err.println("Error reading the file.");
+            return EXIT_IO_ERROR;
+        } catch (NumberFormatException e) {
+            System.err.println("Error: Invalid number in " + configPath + ".");
+            return EXIT_INVALID_INPUT;
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return EXIT_INVALID_INPUT;
+        }
+        ArrayList<String> errorArray = new ArrayList<>(config.settingErrors);
+        for (String setting : settings) {
+            try {
+                config.options.parseSetting(setting);
+            } catch (IllegalArgumentException e) {
+                errorArray.add(e.getMessage());
+            }
+        }
+        ObjectiveFunction objFunc = SteepestDescentOptimizer.createObjectiveFunction(config.objectiveFunctionName,
+                errorArray);
+        if (objFunc != null) {
+            SteepestDescentOptimizer.getValidatedInput(objFunc, config.dimensionality, config.startingPoint,
+                    errorArray);
+        }
+        if (!errorArray.isEmpty()) {
+            for (String s : errorArray) {
+                System.err.println(s);
+            }
+            return EXIT_INVALID_INPUT;
+        }
+        double[] variables = config.startingPoint;
+        try {
+            if (format.equals("binary")) {
+                try (BinaryTrajectoryWriter writer = BinaryTrajectoryWriter.open(Paths.get(outputPath),
+                        objFunc.getName(), config.dimensionality, config.iterations, config.tolerance,
+                        config.stepSize, config.options.getNumericMode())) {
+                    SteepestDescentOptimizer.optimize(objFunc, variables, config.iterations, config.tolerance,
+                            config.stepSize, config.dimensionality, config.options, writer);
+                }
+                return EXIT_OK;
+            }
+            ArrayList<String> outputArray = new ArrayList<>();
+            SteepestDescentOptimizer.addHeader(objFunc, variables, config.iterations, config.tolerance,
+                    config.stepSize, config.dimensionality, config.options, outputArray);
+            if (outputPath != null) {
+                try (ChannelTraceWriter writer = ChannelTraceWriter.open(Paths.get(outputPath),
+                        config.options.sampleEvery,
+                        outputPath.endsWith(".gz"))) {
+                    for (String s : outputArray) {
+                        writer.writeLine(s);
+                    }
+                    SteepestDescentOptimizer.optimize(objFunc, variables, config.iterations, config.tolerance,
+                            config.stepSize, config.dimensionality, config.options, writer);
+                }
+                return EXIT_OK;
+            }
+            PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out),
+                    1 << 16), false);
+            for (String s : outputArray) {
+                out.println(s);
+            }
+            SteepestDescentOptimizer.optimize(objFunc, variables, config.iterations, config.tolerance,
+                    config.stepSize, config.dimensionality, config.options,
+                    new TextTraceWriter(out::println, config.options.sampleEvery));
+            out.flush();
+            return out.checkError() ? EXIT_IO_ERROR : EXIT_OK;
+        } catch (NoSuchFileException e) {
+            System.err.println("Error: Directory not found for " + outputPath + ".");
+            return EXIT_IO_ERROR;
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Error: Could not write " + outputPath + ": " + e.getMessage());
+            return EXIT_IO_ERROR;
+        } catch (IllegalArgumentException e) {
+            // solvers reject objectives they cannot run, such as the stochastic solver on a formula
+            System.err.println(e.getMessage());
+            return EXIT_INVALID_INPUT;
+        }
+    }
+
+    private static String usage(String mode) {
+        switch (mode) {
+            case "--config":
+                return "Usage: --config <file> [--output <file>] [--format text|binary] [settings...]";
+            case "--convert-matrix":
+                return "Usage: --convert-matrix <input> <output>";
+            case "--convert-dataset":
+                return "Usage: --convert-dataset <input> <output>";
+            case "--multistart":
+                return "Usage: --multistart <name> <dimensionality> <starts> <iterations> <tolerance> <stepSize> "
+                        + "[uniform|lhs|sobol] [margin=<m>] [seed=<s>] [threads=<t>] [settings...]";
+            case "--batch":
+                return "Usage: --batch <manifest> [threads] [settings...]";
+            default:
+                return "Error: Unknown option " + mode + ".";
+        }
+    }
 
     public static void main(String args[]) {
+        // non-interactive run of one config file, see runConfig
+        if (args.length >= 2 && args[0].equals("--config")) {
+            int status = runConfig(args);
+            if (status != EXIT_OK) {
+                System.exit(status);
+            }
+            return;
+        }
+        if (args.length == 3 && args[0].equals("--convert-matrix")) {
+            convertMatrix(args);
+            return;
+        }
+        if (args.length == 3 && args[0].equals("--convert-dataset")) {
+            convertDataset(args);
+            return;
+        }
+        // HTTP/JSON server: --serve [port=<p>] [threads=<t>] [queue=<q>] [timeout-ms=<ms>] [cache=<entries>]
+        // [cache-mb=<megabytes>] [cache-dir=<path>] [cache-disk=<entries>] [objective=<name>=<spec>...]
+        // [settings...]
+        if (args.length >= 1 && args[0].equals("--serve")) {
+            runServer(args);
+            return;
+        }
+        // multi-start search: --multistart <name> <dimensionality> <starts> <iterations> <tolerance> <stepSize>
+        // [uniform|lhs|sobol] [margin=<m>] [seed=<s>] [threads=<t>] [settings...]
+        if (args.length >= 7 && args[0].equals("--multistart")) {
+            runMultiStart(args);
+            return;
+        }
+        // headless batch mode: --batch <manifest> [threads] [settings...], see OptimizerOptions.parseSetting
+        if (args.length >= 2 && args[0].equals("--batch")) {
+            runBatch(args);
+            return;
+        }
+        // a headless invocation with a typo must not fall through to the prompts and wait on stdin
+        if (args.length >= 1 && args[0].startsWith("--")) {
+            System.err.println(usage(args[0]));
+            System.exit(EXIT_USAGE);
+        }
         Scanner scanner = new Scanner(System.in);
         // Enter or exit program
         int enter_or_exit;
@@ -448,7 +5935,7 @@ public class Optimizer {
         // Exit if 0
         if (enter_or_exit == 0) {
             System.out.println("Exiting Program...");
-            System.exit(0);
+            return;
         }
         // create output ArrayLists
         ArrayList<String> outputArray = new ArrayList<>();
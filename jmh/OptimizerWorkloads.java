@@ -0,0 +1,105 @@
+import java.util.Random;
+import java.util.function.DoubleSupplier;
+
+// The benchmark cases as DoubleSuppliers, each call runs one invocation and returns something
+// derived from it so the JIT cannot drop the work. JMH refuses benchmark classes in the default
+// package and a named package cannot see Optimizer, so benchmark.OptimizerBenchmark looks these
+// factories up by name once per trial and only calls getAsDouble in the measured loop.
+public final class OptimizerWorkloads {
+    private OptimizerWorkloads() {
+    }
+
+    public static DoubleSupplier compute(String objective, int dim) {
+        Optimizer.ObjectiveFunction objFunc = objectiveFunction(objective);
+        double[] variables = startingPoint(dim);
+        return () -> objFunc.compute(variables);
+    }
+
+    public static DoubleSupplier computeGradient(String objective, int dim) {
+        Optimizer.ObjectiveFunction objFunc = objectiveFunction(objective);
+        double[] variables = startingPoint(dim);
+        double[] gradient = new double[dim];
+        return () -> {
+            objFunc.computeGradient(variables, gradient);
+            return gradient[dim - 1];
+        };
+    }
+
+    public static DoubleSupplier computeValueAndGradient(String objective, int dim) {
+        Optimizer.ObjectiveFunction objFunc = objectiveFunction(objective);
+        double[] variables = startingPoint(dim);
+        double[] gradient = new double[dim];
+        return () -> objFunc.computeValueAndGradient(variables, gradient);
+    }
+
+    public static DoubleSupplier computeGradientMagnitude(String objective, int dim) {
+        Optimizer.ObjectiveFunction objFunc = objectiveFunction(objective);
+        double[] gradient = startingPoint(dim);
+        return () -> objFunc.computeGradientMagnitude(gradient);
+    }
+
+    // one call evaluates a block of batchSize points with computeBatch
+    public static DoubleSupplier computeBatch(String objective, int dim, int batchSize) {
+        Optimizer.ObjectiveFunction objFunc = objectiveFunction(objective);
+        Random random = new Random(42);
+        double[] points = new double[dim * batchSize];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = random.nextDouble() * 4 - 2;
+        }
+        double[] values = new double[batchSize];
+        double[] gradients = new double[points.length];
+        return () -> {
+            objFunc.computeBatch(points, batchSize, dim, values, gradients);
+            return values[batchSize - 1];
+        };
+    }
+
+    // one call is a fixed-length run from the same start, settings can be combined with '+', for
+    // example full+parallel
+    public static DoubleSupplier optimize(String objective, int dim, String mode, int iterations) {
+        Optimizer.ObjectiveFunction objFunc = objectiveFunction(objective);
+        Optimizer.OptimizerOptions options = new Optimizer.OptimizerOptions();
+        for (String setting : mode.split("\\+")) {
+            options.parseSetting(setting);
+        }
+        double[] start = startingPoint(dim);
+        double[] variables = new double[dim];
+        Optimizer.IterationListener discard = new Optimizer.IterationListener() {
+            @Override
+            public void onIteration(int iteration, double objectiveValue, double[] x, double currentTolerance) {
+            }
+
+            @Override
+            public void onConverged(int iteration, double objectiveValue, double[] x, double currentTolerance) {
+            }
+
+            @Override
+            public void onComplete(Optimizer.OptimizationResult result) {
+            }
+        };
+        return () -> {
+            System.arraycopy(start, 0, variables, 0, dim);
+            // tolerance 0 keeps the run going for the whole iteration budget
+            Optimizer.SteepestDescentOptimizer.optimize(objFunc, variables, iterations, 0, 1e-4, dim, options,
+                    discard);
+            return variables[0];
+        };
+    }
+
+    private static Optimizer.ObjectiveFunction objectiveFunction(String objective) {
+        Optimizer.ObjectiveFunction objFunc = Optimizer.SteepestDescentOptimizer.createObjectiveFunction(objective);
+        if (objFunc == null) {
+            throw new IllegalArgumentException("Error: Unknown objective function " + objective + ".");
+        }
+        return objFunc;
+    }
+
+    private static double[] startingPoint(int dim) {
+        Random random = new Random(42);
+        double[] variables = new double[dim];
+        for (int i = 0; i < dim; i++) {
+            variables[i] = random.nextDouble() * 4 - 2;
+        }
+        return variables;
+    }
+}
@@ -0,0 +1,144 @@
+package benchmark;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Microbenchmarks for the objective functions and the optimizer loop, built with mvn -P jmh package.
+// Every case reports throughput and sampled latency per operation; add -prof gc for the bytes
+// allocated per operation. Batch cases count one point of the block as an operation and optimize
+// cases one iteration, so the numbers compare directly with computeValueAndGradient and stay
+// comparable across dimensionalities.
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class OptimizerBenchmark {
+    static final int BATCH_SIZE = 256;
+    static final int ITERATIONS_PER_RUN = 10;
+
+    @State(Scope.Thread)
+    public static class ObjectiveState {
+        @Param({ "quadratic", "rosenbrock", "rosenbrock_bonus" })
+        String objective;
+
+        @Param({ "10", "1000", "100000", "1000000" })
+        int dim;
+
+        DoubleSupplier compute;
+        DoubleSupplier computeGradient;
+        DoubleSupplier computeValueAndGradient;
+        DoubleSupplier computeGradientMagnitude;
+
+        @Setup
+        public void setUp() {
+            compute = workload("compute", objective, dim);
+            computeGradient = workload("computeGradient", objective, dim);
+            computeValueAndGradient = workload("computeValueAndGradient", objective, dim);
+            computeGradientMagnitude = workload("computeGradientMagnitude", objective, dim);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BatchState {
+        @Param({ "quadratic", "rosenbrock", "rosenbrock_bonus" })
+        String objective;
+
+        // a block of 1000000 dimensional points would not fit comfortably in the default heap
+        @Param({ "10", "1000", "100000" })
+        int dim;
+
+        DoubleSupplier computeBatch;
+
+        @Setup
+        public void setUp() {
+            computeBatch = workload("computeBatch", objective, dim, BATCH_SIZE);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class OptimizeState {
+        @Param({ "quadratic", "rosenbrock", "rosenbrock_bonus" })
+        String objective;
+
+        @Param({ "10", "1000", "100000", "1000000" })
+        int dim;
+
+        @Param({ "compatible", "full", "full+parallel" })
+        String mode;
+
+        DoubleSupplier optimize;
+
+        @Setup
+        public void setUp() {
+            optimize = workload("optimize", objective, dim, mode, ITERATIONS_PER_RUN);
+        }
+    }
+
+    @Benchmark
+    public double compute(ObjectiveState state) {
+        return state.compute.getAsDouble();
+    }
+
+    @Benchmark
+    public double computeGradient(ObjectiveState state) {
+        return state.computeGradient.getAsDouble();
+    }
+
+    @Benchmark
+    public double computeValueAndGradient(ObjectiveState state) {
+        return state.computeValueAndGradient.getAsDouble();
+    }
+
+    @Benchmark
+    public double computeGradientMagnitude(ObjectiveState state) {
+        return state.computeGradientMagnitude.getAsDouble();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public double computeBatchPerPoint(BatchState state) {
+        return state.computeBatch.getAsDouble();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITERATIONS_PER_RUN)
+    public double optimizePerIteration(OptimizeState state) {
+        return state.optimize.getAsDouble();
+    }
+
+    // calls the OptimizerWorkloads factory of that name, String arguments stay Strings and Integers
+    // become ints
+    static DoubleSupplier workload(String name, Object... args) {
+        Class<?>[] types = new Class<?>[args.length];
+        for (int i = 0; i < args.length; i++) {
+            types[i] = args[i] instanceof Integer ? int.class : args[i].getClass();
+        }
+        try {
+            Method factory = Class.forName("OptimizerWorkloads").getMethod(name, types);
+            return (DoubleSupplier) factory.invoke(null, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
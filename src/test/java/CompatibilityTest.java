@@ -0,0 +1,118 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+// Checks that compatible mode still matches the original program.
+// 1. floorTo5Decimals against the BigDecimal floorTo5DecimalsExact, bit for bit, on random values
+//    across the magnitudes the fast path handles and beyond, and on values a few ulps around the
+//    0.00001 grid where value * 100000 rounds onto an integer.
+// 2. Every <name>.txt config in src/test/resources/compat is run through --config and its trace is
+//    compared line by line with <name>.expected, the console output of the original program for that
+//    config with the prompt lines removed.
+class CompatibilityTest {
+    private static final long SAMPLES = 3_000_000;
+    private static final Path COMPAT = Paths.get("src", "test", "resources", "compat");
+
+    @Test
+    void fastFloorMatchesBigDecimalOnEdges() {
+        double[] edges = { 0.0, -0.0, Double.MIN_VALUE, -Double.MIN_VALUE, Double.MIN_NORMAL, 1e-5, -1e-5,
+                0.1, -0.1, 1e10, -1e10, 1e15, Double.MAX_VALUE, -Double.MAX_VALUE };
+        for (double edge : edges) {
+            for (double value : new double[] { Math.nextDown(edge), edge, Math.nextUp(edge) }) {
+                // the neighbours of +-MAX_VALUE overflow to infinity, checked below
+                if (Double.isFinite(value)) {
+                    assertFloor(value);
+                }
+            }
+        }
+        // NaN and infinities must keep the NumberFormatException of the BigDecimal path
+        for (double special : new double[] { Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY }) {
+            assertThrows(NumberFormatException.class,
+                    () -> Optimizer.SteepestDescentOptimizer.floorTo5Decimals(special));
+        }
+    }
+
+    @Test
+    void fastFloorMatchesBigDecimalOnRandomInputs() {
+        SplittableRandom random = new SplittableRandom(1);
+        for (long i = 0; i < SAMPLES / 2; i++) {
+            // log-uniform magnitude from 1e-8 to 1e12, either sign
+            double value = Math.pow(10, random.nextDouble(-8, 12));
+            assertFloor(random.nextBoolean() ? value : -value);
+        }
+        for (long i = 0; i < SAMPLES / 2; i++) {
+            // a grid point k / 100000 and its neighbours within 4 ulps
+            long k = random.nextLong(-1_000_000_000_000_000L, 1_000_000_000_000_000L) >> random.nextInt(50);
+            double value = k / 100000.0;
+            int ulps = random.nextInt(-4, 5);
+            for (int u = 0; u < Math.abs(ulps); u++) {
+                value = ulps > 0 ? Math.nextUp(value) : Math.nextDown(value);
+            }
+            assertFloor(value);
+        }
+    }
+
+    @Test
+    void compatibleTracesMatchTheOriginalProgram() throws IOException {
+        List<Path> configs = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(COMPAT, "*.txt")) {
+            for (Path config : stream) {
+                configs.add(config);
+            }
+        }
+        assertFalse(configs.isEmpty(), "No configs found in " + COMPAT + ".");
+        Path output = Files.createTempFile("compat", ".txt");
+        try {
+            for (Path config : configs) {
+                String name = config.getFileName().toString();
+                Path expected = COMPAT.resolve(name.substring(0, name.length() - 4) + ".expected");
+                int status = Optimizer.runConfig(
+                        new String[] { "--config", config.toString(), "--output", output.toString() });
+                assertEquals(Optimizer.EXIT_OK, status, name + ": --config failed");
+                assertNull(firstDifference(Files.readAllLines(expected, StandardCharsets.UTF_8),
+                        Files.readAllLines(output, StandardCharsets.UTF_8)), name);
+            }
+        } finally {
+            Files.deleteIfExists(output);
+        }
+    }
+
+    private static void assertFloor(double value) {
+        double fast = Optimizer.SteepestDescentOptimizer.floorTo5Decimals(value);
+        double exact = Optimizer.SteepestDescentOptimizer.floorTo5DecimalsExact(value);
+        if (Double.doubleToRawLongBits(fast) != Double.doubleToRawLongBits(exact)) {
+            assertEquals(exact, fast, "floorTo5Decimals(" + value + ")");
+            // same value but a different sign of zero
+            assertEquals(Double.doubleToRawLongBits(exact), Double.doubleToRawLongBits(fast),
+                    "floorTo5Decimals(" + value + ") sign of zero");
+        }
+    }
+
+    // null when the traces are the same, otherwise a description of the first differing line
+    private static String firstDifference(List<String> expected, List<String> actual) {
+        int lines = Math.min(expected.size(), actual.size());
+        for (int i = 0; i < lines; i++) {
+            if (!expected.get(i).equals(actual.get(i))) {
+                return "line " + (i + 1) + " differs, expected \"" + expected.get(i) + "\" but got \""
+                        + actual.get(i) + "\"";
+            }
+        }
+        if (expected.size() != actual.size()) {
+            return expected.size() + " lines expected but got " + actual.size();
+        }
+        return null;
+    }
+}
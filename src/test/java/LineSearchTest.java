@@ -0,0 +1,119 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// Runs whose gradient does not match the objective must stop as soon as the line search finds no
+// step that decreases it, instead of repeating the same failed search until the budget runs out.
+class LineSearchTest {
+    private static final int ITERATIONS = 1_000_000;
+    private static final int DIMENSIONALITY = 10;
+
+    @Test
+    void armijoStopsWhenNoStepDecreases() {
+        assertLineSearchFails("steepest_descent", "armijo");
+    }
+
+    @Test
+    void strongWolfeStopsWhenNoStepDecreases() {
+        assertLineSearchFails("steepest_descent", "wolfe");
+    }
+
+    @Test
+    void lbfgsStopsWhenNoStepDecreases() {
+        assertLineSearchFails("lbfgs", "wolfe");
+    }
+
+    // the built-in rosenbrock gradient leaves out the coupling term, L-BFGS used to spend the whole
+    // budget on the same collapsed zoom at 41 evaluations per iteration
+    @Test
+    void lbfgsStopsOnTheRosenbrockGradient() {
+        Optimizer.OptimizerOptions options = new Optimizer.OptimizerOptions();
+        options.parseSetting("full");
+        options.parseSetting("lbfgs");
+        double[] variables = new double[50];
+        Random random = new Random(1);
+        for (int i = 0; i < variables.length; i++) {
+            variables[i] = random.nextDouble() * 4 - 2;
+        }
+        Optimizer.OptimizationResult result = Optimizer.SteepestDescentOptimizer.optimize(
+                Optimizer.SteepestDescentOptimizer.createObjectiveFunction("rosenbrock"), variables, ITERATIONS,
+                1e-6, 1e-4, variables.length, options, new QuietListener());
+        assertNotEquals(Optimizer.TerminationReason.MAX_ITERATIONS, result.getTerminationReason());
+        assertTrue(result.getIterations() < 1000, "stopped after " + result.getIterations() + " iterations");
+    }
+
+    private static void assertLineSearchFails(String... settings) {
+        Optimizer.OptimizerOptions options = new Optimizer.OptimizerOptions();
+        options.parseSetting("full");
+        for (String setting : settings) {
+            options.parseSetting(setting);
+        }
+        double[] variables = new double[DIMENSIONALITY];
+        Arrays.fill(variables, 1);
+        Optimizer.ObjectiveFunction objective = new UphillQuadratic();
+        double start = objective.compute(variables);
+        Optimizer.OptimizationResult result = Optimizer.SteepestDescentOptimizer.optimize(objective, variables,
+                ITERATIONS, 1e-6, 1e-3, DIMENSIONALITY, options, new QuietListener());
+        assertEquals(Optimizer.TerminationReason.LINE_SEARCH_FAILED, result.getTerminationReason());
+        assertTrue(result.getIterations() < 10, "stopped after " + result.getIterations() + " iterations");
+        // a failed search leaves the point where it was
+        assertEquals(start, result.getObjectiveValue());
+    }
+
+    // sum of squares whose gradient points uphill
+    private static final class UphillQuadratic extends Optimizer.ObjectiveFunction {
+        @Override
+        public double compute(double[] variables) {
+            double value = 0;
+            for (double variable : variables) {
+                value += variable * variable;
+            }
+            return value;
+        }
+
+        @Override
+        public void computeGradient(double[] variables, double[] gradient) {
+            for (int i = 0; i < variables.length; i++) {
+                gradient[i] = -2 * variables[i];
+            }
+        }
+
+        @Override
+        public double computeGradientMagnitude(double[] variables) {
+            double magnitude = 0;
+            for (double variable : variables) {
+                magnitude += variable * variable;
+            }
+            return Math.sqrt(magnitude);
+        }
+
+        @Override
+        public double[] getBounds() {
+            return new double[] { -5, 5 };
+        }
+
+        @Override
+        public String getName() {
+            return "Uphill Quadratic";
+        }
+    }
+
+    private static final class QuietListener implements Optimizer.IterationListener {
+        @Override
+        public void onIteration(int iteration, double objectiveValue, double[] variables, double currentTolerance) {
+        }
+
+        @Override
+        public void onConverged(int iteration, double objectiveValue, double[] variables, double currentTolerance) {
+        }
+
+        @Override
+        public void onComplete(Optimizer.OptimizationResult result) {
+        }
+    }
+}